@@ -0,0 +1,92 @@
+package com.kinesisflow.benchmark;
+
+import com.kinesisflow.engine.AlertThresholdIndex;
+import com.kinesisflow.engine.PriceEnvelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Crossing lookup of the engine against the in-process index: one key holding alerts thresholds,
+ * one unit apart, and a price move that crosses fanOut of them, as the record listener resolves
+ * it (GT on the way up, LT on the way down) and as the batch listener does for a whole poll
+ * (one envelope range, each tick replayed against it).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlertMatchingBenchmark {
+
+    private static final String GT_KEY = "BTC:1";
+    private static final String LT_KEY = "BTC:-1";
+    private static final long BASE = 4_500_000L;
+
+    @Param({"1000", "100000", "1000000"})
+    public int alerts;
+
+    @Param({"1", "100", "10000"})
+    public int fanOut;
+
+    private AlertThresholdIndex index;
+    private long former;
+    private long current;
+    private long[] ticks;
+
+    @Setup
+    public void setUp() {
+        index = new AlertThresholdIndex();
+        String[] members = new String[alerts];
+        long[] thresholds = new long[alerts];
+        for (int i = 0; i < alerts; i++) {
+            thresholds[i] = BASE + i;
+            members[i] = "user" + i + ":" + (BASE + i);
+        }
+        index.replace(GT_KEY, members, thresholds);
+        index.replace(LT_KEY, members.clone(), thresholds.clone());
+
+        former = BASE + alerts / 2 - Math.min(fanOut, alerts) / 2;
+        current = former + Math.min(fanOut, alerts);
+
+        // A poll of 100 ticks oscillating over the same move
+        ticks = new long[100];
+        for (int i = 0; i < ticks.length; i++) {
+            ticks[i] = i % 2 == 0 ? current : former;
+        }
+    }
+
+    @Benchmark
+    public Set<String> crossingUp() {
+        return index.usersInRange(GT_KEY, former, current, true, false);
+    }
+
+    @Benchmark
+    public Set<String> crossingDown() {
+        return index.usersInRange(LT_KEY, former, current, true, false);
+    }
+
+    @Benchmark
+    public Set<String> noCrossing() {
+        return index.usersInRange(GT_KEY, BASE - 10, BASE - 1, true, false);
+    }
+
+    @Benchmark
+    public void batchEnvelope(Blackhole blackhole) {
+        PriceEnvelope envelope = PriceEnvelope.of(former, ticks);
+        AlertThresholdIndex.ThresholdRange gt = index.range(GT_KEY, envelope.min(), envelope.max(), true, false);
+        AlertThresholdIndex.ThresholdRange lt = index.range(LT_KEY, envelope.min(), envelope.max(), true, false);
+        long previous = former;
+        for (long tick : ticks) {
+            blackhole.consume(tick > previous ? gt.usersInRange(previous, tick, true, false) : lt.usersInRange(tick, previous, true, false));
+            previous = tick;
+        }
+    }
+}
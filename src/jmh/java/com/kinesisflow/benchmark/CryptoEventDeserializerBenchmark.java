@@ -0,0 +1,69 @@
+package com.kinesisflow.benchmark;
+
+import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.serde.CryptoEventDeserializer;
+import com.kinesisflow.serde.CryptoEventJsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Consumer-side JSON decoding of a market tick: the fast parser alone, the deserializer as
+ * configured in production, and Jackson's JsonDeserializer it replaces.
+ * Run with -prof gc to compare the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CryptoEventDeserializerBenchmark {
+
+    private static final String TOPIC = "raw-market-data";
+
+    @Param({"{\"asset\":\"BTC\",\"price\":67234.51,\"timestamp\":1718000000000}",
+            "{\"timestamp\":1718000000000,\"source\":\"binance\",\"asset\":\"ETH\",\"price\":\"3456.7\"}"})
+    public String payload;
+
+    private byte[] data;
+    private CryptoEventJsonParser parser;
+    private CryptoEventDeserializer deserializer;
+    private JsonDeserializer<CryptoEvent> jackson;
+
+    @Setup
+    public void setUp() {
+        data = payload.getBytes(StandardCharsets.UTF_8);
+        parser = new CryptoEventJsonParser();
+
+        Map<String, Object> configs = Map.of(
+                JsonDeserializer.VALUE_DEFAULT_TYPE, CryptoEvent.class.getName(),
+                JsonDeserializer.TRUSTED_PACKAGES, "com.kinesisflow.record");
+        deserializer = new CryptoEventDeserializer();
+        deserializer.configure(configs, false);
+        jackson = new JsonDeserializer<>();
+        jackson.configure(configs, false);
+    }
+
+    @Benchmark
+    public CryptoEvent fastParser() {
+        return parser.parse(data);
+    }
+
+    @Benchmark
+    public CryptoEvent cryptoEventDeserializer() {
+        return deserializer.deserialize(TOPIC, data);
+    }
+
+    @Benchmark
+    public CryptoEvent jsonDeserializer() {
+        return jackson.deserialize(TOPIC, data);
+    }
+}
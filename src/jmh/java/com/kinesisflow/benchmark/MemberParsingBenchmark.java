@@ -0,0 +1,63 @@
+package com.kinesisflow.benchmark;
+
+import com.kinesisflow.engine.AlertThresholdIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+ * Turning crossed rule index members ("user:price") into user ids, as the Lua matching path does
+ * for every crossing: the former split-and-stream version against the indexOf loop it uses now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MemberParsingBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int fanOut;
+
+    private List<String> members;
+
+    @Setup
+    public void setUp() {
+        members = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            members.add("user" + i + ":" + (45000 + i % 100) + ".5");
+        }
+    }
+
+    @Benchmark
+    public Set<String> splitStream() {
+        return members.stream()
+                .map(value -> value == null || !value.contains(":") ? Optional.<String>empty() : Optional.of(value.split(":")[0]))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Set<String> indexOfLoop() {
+        Set<String> users = new HashSet<>((int) (members.size() / 0.75f) + 1);
+        for (String member : members) {
+            String userId = AlertThresholdIndex.userIdOf(member);
+            if (userId != null) {
+                users.add(userId);
+            }
+        }
+        return users;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kinesisflow.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.mapper.EventToNotificationMapper;
+import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.record.NotificationBatch;
+import com.kinesisflow.websocket.NotificationFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of one crossing tick fanned out to fanOut users: building the batch, encoding it for
+ * pub/sub, and encoding what each recipient's socket receives, per user with Jackson (as
+ * before) or from the pre-encoded frame, with and without the user in the payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotificationFanOutBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int fanOut;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CryptoEvent event;
+    private List<String> users;
+    private NotificationBatch batch;
+
+    @Setup
+    public void setUp() {
+        event = new CryptoEvent("BTC", new BigDecimal("45123.75"), 1718000000000L);
+        users = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            users.add("user" + i);
+        }
+        batch = EventToNotificationMapper.mapToNotificationBatch(event, users);
+    }
+
+    @Benchmark
+    public NotificationBatch mapBatch() {
+        return EventToNotificationMapper.mapToNotificationBatch(event, users);
+    }
+
+    @Benchmark
+    public String encodeBatch() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(batch);
+    }
+
+    @Benchmark
+    public void encodePerUser(Blackhole blackhole) throws JsonProcessingException {
+        for (String user : users) {
+            blackhole.consume(objectMapper.writeValueAsString(EventToNotificationMapper.mapToNotification(event, user)));
+        }
+    }
+
+    @Benchmark
+    public void spliceFrame(Blackhole blackhole) throws JsonProcessingException {
+        NotificationFrame frame = NotificationFrame.of(batch, objectMapper, true);
+        for (String user : users) {
+            blackhole.consume(frame.payloadFor(user));
+        }
+    }
+
+    @Benchmark
+    public void sharedFrame(Blackhole blackhole) throws JsonProcessingException {
+        NotificationFrame frame = NotificationFrame.of(batch, objectMapper, false);
+        for (int i = 0; i < users.size(); i++) {
+            blackhole.consume(frame.sharedMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.kinesisflow.benchmark;
+
+import com.kinesisflow.engine.PriceScale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Range bounds of RedisSortedSetService.getRangeByScore: prices converted to fixed-point units
+ * with exclusive bounds moved by one unit, against the floating point adjustment it replaced.
+ * priceScale is the incoming price's scale relative to the asset's: equal scales take the
+ * setScale shortcut, others rescale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScoreAdjustmentBenchmark {
+
+    @Param({"2", "8"})
+    public int priceScale;
+
+    private PriceScale scale;
+    private BigDecimal min;
+    private BigDecimal max;
+
+    @Setup
+    public void setUp() {
+        scale = new PriceScale(2, "");
+        min = new BigDecimal("45000.25").setScale(priceScale);
+        max = new BigDecimal("45123.75").setScale(priceScale);
+    }
+
+    @Benchmark
+    public void fixedPointUnits(Blackhole blackhole) {
+        long adjustedMin = scale.toUnits("BTC", min) + 1;
+        long adjustedMax = scale.toUnits("BTC", max) - 1;
+        blackhole.consume(scale.toScore(adjustedMin));
+        blackhole.consume(scale.toScore(adjustedMax));
+    }
+
+    @Benchmark
+    public void floatingPointNudge(Blackhole blackhole) {
+        blackhole.consume(Math.nextUp(min.doubleValue()));
+        blackhole.consume(Math.nextDown(max.doubleValue()));
+    }
+}
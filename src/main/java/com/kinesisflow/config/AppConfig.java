@@ -1,5 +1,6 @@
 package com.kinesisflow.config;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
@@ -23,6 +24,8 @@ AppConfig  {
                 .partitions(12)
                 .replicas(1)
                 .compact()
+                // Broker append time in the record timestamp: splits pipeline latency at the broker
+                .config(TopicConfig.MESSAGE_TIMESTAMP_TYPE_CONFIG, "LogAppendTime")
                 .build();
     }
 
@@ -14,12 +14,20 @@ public class KafkaDLQConfig {
 
 
     @Bean
-    public DefaultErrorHandler errorHandler(KafkaTemplate<Object, Object> kafkaTemplate) {
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<Object, Object> kafkaTemplate) {
+        return new DeadLetterPublishingRecoverer(kafkaTemplate,
                 (record, ex) -> new TopicPartition(record.topic() + "-DLQ", record.partition()));
+    }
 
-        FixedBackOff backOff = new FixedBackOff(1000L, 3);
+    // Shared with the mailbox dispatcher, which retries off the consumer thread
+    @Bean
+    public FixedBackOff deadLetterBackOff() {
+        return new FixedBackOff(1000L, 3);
+    }
 
-        return new DefaultErrorHandler(recoverer, backOff);
+    @Bean
+    public DefaultErrorHandler errorHandler(DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                            FixedBackOff deadLetterBackOff) {
+        return new DefaultErrorHandler(deadLetterPublishingRecoverer, deadLetterBackOff);
     }
 }
@@ -1,18 +1,26 @@
 package com.kinesisflow.config;
 
+import com.kinesisflow.engine.PartitionStateRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 
 @Configuration
 public class KafkaListenerFactoryConfig {
 
     private final DefaultErrorHandler errorHandler;
+    private final PartitionStateRegistry partitionStateRegistry;
+    private final boolean mailboxEnabled;
 
-    public KafkaListenerFactoryConfig(DefaultErrorHandler errorHandler) {
+    public KafkaListenerFactoryConfig(DefaultErrorHandler errorHandler, PartitionStateRegistry partitionStateRegistry,
+                                      @Value("${kinesisflow.consumer.mailbox.enabled:false}") boolean mailboxEnabled) {
         this.errorHandler = errorHandler;
+        this.partitionStateRegistry = partitionStateRegistry;
+        this.mailboxEnabled = mailboxEnabled;
     }
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
@@ -21,6 +29,36 @@ public class KafkaListenerFactoryConfig {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         factory.setCommonErrorHandler(errorHandler);
+        factory.getContainerProperties().setConsumerRebalanceListener(partitionStateRegistry);
+        /*
+         * The market data listener acknowledges each record itself. In mailbox mode those acks
+         * arrive out of order from virtual threads; async acks defer each partition's commit
+         * until every lower offset has been acknowledged.
+         */
+        factory.setContainerCustomizer(container -> {
+            if ("kinesis-listener".equals(container.getListenerId())) {
+                container.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+                container.getContainerProperties().setAsyncAcks(mailboxEnabled);
+            }
+        });
+        return factory;
+    }
+
+    /*
+     * Batch container factory: the listener receives the whole poll as a List<ConsumerRecord>.
+     * The same DefaultErrorHandler is used; when the listener throws a BatchListenerFailedException
+     * it commits the records before the failed index, retries from it, and only the failing record
+     * is routed to the DLQ once retries are exhausted.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setCommonErrorHandler(errorHandler);
+        factory.getContainerProperties().setConsumerRebalanceListener(partitionStateRegistry);
         return factory;
     }
 }
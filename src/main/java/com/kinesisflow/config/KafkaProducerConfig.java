@@ -0,0 +1,85 @@
+package com.kinesisflow.config;
+
+import com.kinesisflow.record.CryptoEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Producers. Declaring any ProducerFactory or KafkaTemplate switches off Boot's, so the shared
+ * ones (DLQ publishing and anything else) are declared here from spring.kafka.* as before.
+ *
+ * raw-market-data gets its own producer tuned for throughput: ticks are small and many, so a
+ * few milliseconds of linger fill large compressed batches. Both producers publish the Kafka
+ * client metrics to Micrometer (kafka.producer.*), which includes records-per-request,
+ * batch-size and buffer-available-bytes, tagged with producer=default or producer=market-data.
+ */
+@Configuration
+public class KafkaProducerConfig {
+
+    @Bean
+    @Primary
+    public ProducerFactory<Object, Object> kafkaProducerFactory(KafkaProperties kafkaProperties,
+                                                                ObjectProvider<SslBundles> sslBundles,
+                                                                MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<Object, Object> factory =
+                new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable()));
+        String transactionIdPrefix = kafkaProperties.getProducer().getTransactionIdPrefix();
+        if (transactionIdPrefix != null) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry, List.of(Tag.of("producer", "default"))));
+        return factory;
+    }
+
+    @Bean
+    @Primary
+    public KafkaTemplate<Object, Object> kafkaTemplate(ProducerFactory<Object, Object> kafkaProducerFactory) {
+        return new KafkaTemplate<>(kafkaProducerFactory);
+    }
+
+    @Bean
+    public ProducerFactory<String, CryptoEvent> marketDataProducerFactory(
+            KafkaProperties kafkaProperties,
+            ObjectProvider<SslBundles> sslBundles,
+            MeterRegistry meterRegistry,
+            @Value("${kinesisflow.producer.market-data.linger-ms:5}") int lingerMs,
+            @Value("${kinesisflow.producer.market-data.batch-size:65536}") int batchSize,
+            @Value("${kinesisflow.producer.market-data.compression-type:lz4}") String compressionType,
+            @Value("${kinesisflow.producer.market-data.buffer-memory:67108864}") long bufferMemory) {
+
+        Map<String, Object> configs = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        configs.put(ProducerConfig.CLIENT_ID_CONFIG, "kinesisflow-market-data");
+
+        DefaultKafkaProducerFactory<String, CryptoEvent> factory = new DefaultKafkaProducerFactory<>(configs);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry, List.of(Tag.of("producer", "market-data"))));
+        return factory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, CryptoEvent> marketDataKafkaTemplate(
+            @Qualifier("marketDataProducerFactory") ProducerFactory<String, CryptoEvent> marketDataProducerFactory) {
+        KafkaTemplate<String, CryptoEvent> template = new KafkaTemplate<>(marketDataProducerFactory);
+        template.setDefaultTopic("raw-market-data");
+        return template;
+    }
+}
@@ -1,6 +1,8 @@
 package com.kinesisflow.config;
 
+import com.kinesisflow.service.RedisSortedSetService;
 import com.kinesisflow.websocket.RedisMessageSubscriber;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -37,12 +39,23 @@ public class RedisConfig {
         return new MessageListenerAdapter(subscriber);
     }
 
+    /*
+     * Notification shards ("alerts:{shard}") are subscribed by SessionOwnershipRegistry as users connect.
+     * The single "alerts" channel stays subscribed while nodes that still publish there may be running
+     * (rolling upgrade); turn it off once every node publishes to the shards.
+     * Rule index changes keep the local index of every node in sync with Redis.
+     */
     @Bean
     public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory,
-                                                        MessageListenerAdapter listenerAdapter) {
+                                                        MessageListenerAdapter listenerAdapter,
+                                                        RedisSortedSetService redisSortedSetService,
+                                                        @Value("${kinesisflow.notifications.legacy-channel.enabled:true}") boolean legacyChannel) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(listenerAdapter, new ChannelTopic("alerts"));
+        container.addMessageListener(redisSortedSetService, new ChannelTopic(RedisSortedSetService.RULE_INDEX_CHANNEL));
+        if (legacyChannel) {
+            container.addMessageListener(listenerAdapter, new ChannelTopic("alerts"));
+        }
         return container;
     }
 
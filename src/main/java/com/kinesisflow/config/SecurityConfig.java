@@ -50,9 +50,11 @@ public class SecurityConfig {
                 // Configure endpoint authorization
                 .authorizeHttpRequests(auth -> auth
                         // Public endpoints
-                        .requestMatchers("/ingest").permitAll()
+                        .requestMatchers("/ingest", "/ingest/batch").permitAll()
                         .requestMatchers("/auth/**").permitAll()
-                        .requestMatchers("/ws/notifications/**").permitAll()
+                        .requestMatchers("/ws/notifications/**", "/ws/ingest/**").permitAll()
+                        // Starts recordings and hands out their dumps; anyone can register, so admins only
+                        .requestMatchers("/actuator/flightrecorder", "/actuator/flightrecorder/**").hasRole("ADMIN")
                         .requestMatchers("/actuator/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
 
@@ -1,12 +1,16 @@
 package com.kinesisflow.config;
 
 import com.kinesisflow.service.JwtService;
+import com.kinesisflow.websocket.IngestWebSocketHandler;
 import com.kinesisflow.websocket.NotifierWebSocketHandler;
 import com.kinesisflow.websocket.AuthHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 
 @Configuration
@@ -15,11 +19,14 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
 
     private final JwtService jwtService;
     private final NotifierWebSocketHandler notifierWebSocketHandler;
+    private final IngestWebSocketHandler ingestWebSocketHandler;
 
 
-    public WebSocketConfiguration(JwtService jwtService, NotifierWebSocketHandler notifierWebSocketHandler) {
+    public WebSocketConfiguration(JwtService jwtService, NotifierWebSocketHandler notifierWebSocketHandler,
+                                  IngestWebSocketHandler ingestWebSocketHandler) {
         this.jwtService = jwtService;
         this.notifierWebSocketHandler = notifierWebSocketHandler;
+        this.ingestWebSocketHandler = ingestWebSocketHandler;
     }
 
 
@@ -28,6 +35,21 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
         registry.addHandler(notifierWebSocketHandler, "/ws/notifications")
                 .addInterceptors(new AuthHandshakeInterceptor(jwtService))
                 .setAllowedOrigins("*");
+        registry.addHandler(ingestWebSocketHandler, "/ws/ingest")
+                .addInterceptors(new AuthHandshakeInterceptor(jwtService))
+                .setAllowedOrigins("*");
+    }
+
+    /*
+     * Ingest batch frames are whole binary messages; the container's default 8 KB buffer
+     * would close sessions sending a few hundred ticks per frame
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${kinesisflow.ingest.ws.max-frame-bytes:262144}") int maxFrameBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        return container;
     }
 
 }
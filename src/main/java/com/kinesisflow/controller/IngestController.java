@@ -1,8 +1,14 @@
 package com.kinesisflow.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import com.kinesisflow.record.BatchIngestResult;
 import com.kinesisflow.record.CryptoEvent;
-import com.kinesisflow.service.KafkaProducerService;
+import com.kinesisflow.service.BatchIngestService;
+import com.kinesisflow.service.TickConflator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,21 +16,50 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 
+import java.io.IOException;
+
 @RestController
 @Tag(name = "Ingestion", description = "Send crypto events to Kafka")
 public class IngestController {
 
-    private final KafkaProducerService producerService;
+    private final TickConflator tickConflator;
+    private final BatchIngestService batchIngestService;
 
-    public IngestController(KafkaProducerService producerService) {
-        this.producerService = producerService;
+    public IngestController(TickConflator tickConflator, BatchIngestService batchIngestService) {
+        this.tickConflator = tickConflator;
+        this.batchIngestService = batchIngestService;
     }
 
     @Operation(summary = "Send event to Kafka", description = "Sends a validated CryptoEvent to the Kafka topic.")
     @ApiResponse(responseCode = "200", description = "Message sent successfully")
+    @ApiResponse(responseCode = "503", description = "The producer or the conflation stage is saturated")
     @PostMapping("/ingest")
     public ResponseEntity<String> sendMessage(@RequestBody @Valid CryptoEvent event) {
-        producerService.send(event);
+        tickConflator.submit(event);
         return ResponseEntity.ok("Message sent to Kafka");
     }
+
+    @Operation(
+            summary = "Send a batch of events to Kafka",
+            description = "Streams a JSON array or NDJSON body (chunked transfer supported). Each event is validated and sent asynchronously; the response reports the status of every item.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Every event was acknowledged by Kafka"),
+                    @ApiResponse(responseCode = "207", description = "Some events were invalid, rejected or failed, or the body was truncated at malformed JSON"),
+                    @ApiResponse(responseCode = "503", description = "No event could be sent because the producer is saturated")
+            }
+    )
+    @PostMapping(value = "/ingest/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchIngestResult> sendBatch(HttpServletRequest request) throws IOException {
+        BatchIngestResult result = batchIngestService.ingest(request.getInputStream());
+
+        if (result.allAccepted()) {
+            return ResponseEntity.ok(result);
+        }
+        if (result.rejected() > 0 && result.accepted() == 0) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(result);
+        }
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(result);
+    }
 }
@@ -0,0 +1,317 @@
+package com.kinesisflow.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * In-memory replica of the Redis rule index (one sorted set per asset and comparison type).
+ * Each key maps to an immutable slice of sorted fixed-point thresholds (see PriceScale) plus the
+ * user ids subscribed at each threshold, so crossing detection is a binary search instead of a
+ * ZRANGEBYSCORE.
+ * Writes replace the slice copy-on-write; subscriptions change far less often than ticks arrive.
+ */
+@Component
+public class AlertThresholdIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertThresholdIndex.class);
+
+    private final Map<String, Slice> slices = new ConcurrentHashMap<>();
+
+    public void add(String key, String member, long score) {
+        String userId = userIdOf(member);
+        if (userId == null) {
+            logger.warn("Ignoring rule index member with invalid format: key={}, member={}", key, member);
+            return;
+        }
+        slices.compute(key, (k, slice) -> (slice == null ? Slice.EMPTY : slice).with(member, userId, score));
+    }
+
+    public void remove(String key, String member) {
+        slices.computeIfPresent(key, (k, slice) -> {
+            Slice updated = slice.without(member);
+            return updated.size() == 0 ? null : updated;
+        });
+    }
+
+    // Bulk add: one merged slice however many members, instead of a copy per member
+    public void addAll(String key, String[] members, long[] scores) {
+        slices.compute(key, (k, slice) -> {
+            Slice merged = (slice == null ? Slice.EMPTY : slice).withAll(members, scores);
+            return merged.size() == 0 ? null : merged;
+        });
+    }
+
+    public void removeAll(String key, Set<String> members) {
+        slices.computeIfPresent(key, (k, slice) -> {
+            Slice updated = slice.withoutAll(members);
+            return updated.size() == 0 ? null : updated;
+        });
+    }
+
+    public void replace(String key, String[] members, long[] scores) {
+        Slice slice = Slice.of(members, scores);
+        if (slice.size() == 0) {
+            slices.remove(key);
+        } else {
+            slices.put(key, slice);
+        }
+    }
+
+    public Set<String> keys() {
+        return Set.copyOf(slices.keySet());
+    }
+
+    public void clear() {
+        slices.clear();
+    }
+
+    public int size(String key) {
+        Slice slice = slices.get(key);
+        return slice == null ? 0 : slice.size();
+    }
+
+    public Set<String> usersInRange(String key, long min, long max, boolean minInclusive, boolean maxInclusive) {
+        return range(key, min, max, minInclusive, maxInclusive).users();
+    }
+
+    public ThresholdRange range(String key, long min, long max, boolean minInclusive, boolean maxInclusive) {
+        Slice slice = slices.get(key);
+        if (slice == null) {
+            return ThresholdRange.EMPTY;
+        }
+        return new ThresholdRange(slice.thresholds, slice.userIds, 0, slice.size())
+                .subRange(min, max, minInclusive, maxInclusive);
+    }
+
+    // "user:price" -> "user"; null for a malformed member
+    public static String userIdOf(String member) {
+        if (member == null) {
+            return null;
+        }
+        int separator = member.indexOf(':');
+        return separator < 0 ? null : member.substring(0, separator);
+    }
+
+    // First index in [low, high) whose threshold is >= value
+    private static int lowerBound(long[] thresholds, int low, int high, long value) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index in [low, high) whose threshold is > value
+    private static int upperBound(long[] thresholds, int low, int high, long value) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Zero-copy view over a contiguous run of an immutable slice. A batch resolves one range
+     * per asset and direction covering the whole price path, then replays each tick against it.
+     */
+    public static final class ThresholdRange {
+
+        public static final ThresholdRange EMPTY = new ThresholdRange(new long[0], new String[0], 0, 0);
+
+        private final long[] thresholds;
+        private final String[] userIds;
+        private final int from;
+        private final int to;
+
+        private ThresholdRange(long[] thresholds, String[] userIds, int from, int to) {
+            this.thresholds = thresholds;
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        public static ThresholdRange of(String[] members, long[] scores) {
+            Slice slice = Slice.of(members, scores);
+            return new ThresholdRange(slice.thresholds, slice.userIds, 0, slice.size());
+        }
+
+        public int size() {
+            return to - from;
+        }
+
+        public boolean isEmpty() {
+            return from >= to;
+        }
+
+        public ThresholdRange subRange(long min, long max, boolean minInclusive, boolean maxInclusive) {
+            int start = minInclusive ? lowerBound(thresholds, from, to, min) : upperBound(thresholds, from, to, min);
+            int end = maxInclusive ? upperBound(thresholds, from, to, max) : lowerBound(thresholds, from, to, max);
+            return start >= end ? EMPTY : new ThresholdRange(thresholds, userIds, start, end);
+        }
+
+        public Set<String> usersInRange(long min, long max, boolean minInclusive, boolean maxInclusive) {
+            return subRange(min, max, minInclusive, maxInclusive).users();
+        }
+
+        public Set<String> users() {
+            if (isEmpty()) {
+                return Collections.emptySet();
+            }
+            Set<String> users = new HashSet<>(Math.max(4, size() * 4 / 3 + 1));
+            for (int i = from; i < to; i++) {
+                users.add(userIds[i]);
+            }
+            return users;
+        }
+    }
+
+    private static final class Slice {
+
+        static final Slice EMPTY = new Slice(new long[0], new String[0], new String[0]);
+
+        final long[] thresholds;
+        final String[] userIds;
+        final String[] members;
+
+        private Slice(long[] thresholds, String[] userIds, String[] members) {
+            this.thresholds = thresholds;
+            this.userIds = userIds;
+            this.members = members;
+        }
+
+        static Slice of(String[] members, long[] scores) {
+            Integer[] order = new Integer[members.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(scores[a], scores[b]));
+
+            long[] thresholds = new long[members.length];
+            String[] userIds = new String[members.length];
+            String[] sortedMembers = new String[members.length];
+            int size = 0;
+            for (Integer i : order) {
+                String userId = userIdOf(members[i]);
+                if (userId == null) {
+                    logger.warn("Ignoring rule index member with invalid format: {}", members[i]);
+                    continue;
+                }
+                thresholds[size] = scores[i];
+                userIds[size] = userId;
+                sortedMembers[size] = members[i];
+                size++;
+            }
+            return new Slice(Arrays.copyOf(thresholds, size), Arrays.copyOf(userIds, size), Arrays.copyOf(sortedMembers, size));
+        }
+
+        int size() {
+            return thresholds.length;
+        }
+
+        Slice with(String member, String userId, long score) {
+            Slice base = without(member);
+            int position = upperBound(base.thresholds, 0, base.size(), score);
+            int size = base.size();
+
+            long[] thresholds = new long[size + 1];
+            String[] userIds = new String[size + 1];
+            String[] members = new String[size + 1];
+
+            System.arraycopy(base.thresholds, 0, thresholds, 0, position);
+            System.arraycopy(base.userIds, 0, userIds, 0, position);
+            System.arraycopy(base.members, 0, members, 0, position);
+
+            thresholds[position] = score;
+            userIds[position] = userId;
+            members[position] = member;
+
+            System.arraycopy(base.thresholds, position, thresholds, position + 1, size - position);
+            System.arraycopy(base.userIds, position, userIds, position + 1, size - position);
+            System.arraycopy(base.members, position, members, position + 1, size - position);
+
+            return new Slice(thresholds, userIds, members);
+        }
+
+        // Added members replace existing entries of the same member
+        Slice withAll(String[] added, long[] addedScores) {
+            Set<String> replaced = new HashSet<>(Arrays.asList(added));
+            String[] allMembers = new String[size() + added.length];
+            long[] allScores = new long[allMembers.length];
+            int size = 0;
+            for (int i = 0; i < members.length; i++) {
+                if (!replaced.contains(members[i])) {
+                    allMembers[size] = members[i];
+                    allScores[size] = thresholds[i];
+                    size++;
+                }
+            }
+            System.arraycopy(added, 0, allMembers, size, added.length);
+            System.arraycopy(addedScores, 0, allScores, size, added.length);
+            size += added.length;
+            return of(Arrays.copyOf(allMembers, size), Arrays.copyOf(allScores, size));
+        }
+
+        Slice withoutAll(Set<String> removed) {
+            long[] keptThresholds = new long[size()];
+            String[] keptUserIds = new String[size()];
+            String[] keptMembers = new String[size()];
+            int size = 0;
+            for (int i = 0; i < members.length; i++) {
+                if (!removed.contains(members[i])) {
+                    keptThresholds[size] = thresholds[i];
+                    keptUserIds[size] = userIds[i];
+                    keptMembers[size] = members[i];
+                    size++;
+                }
+            }
+            if (size == size()) {
+                return this;
+            }
+            return new Slice(Arrays.copyOf(keptThresholds, size), Arrays.copyOf(keptUserIds, size), Arrays.copyOf(keptMembers, size));
+        }
+
+        Slice without(String member) {
+            int position = -1;
+            for (int i = 0; i < members.length; i++) {
+                if (members[i].equals(member)) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                return this;
+            }
+
+            int size = size();
+            long[] thresholds = new long[size - 1];
+            String[] userIds = new String[size - 1];
+            String[] remaining = new String[size - 1];
+
+            System.arraycopy(this.thresholds, 0, thresholds, 0, position);
+            System.arraycopy(this.userIds, 0, userIds, 0, position);
+            System.arraycopy(this.members, 0, remaining, 0, position);
+
+            System.arraycopy(this.thresholds, position + 1, thresholds, position, size - position - 1);
+            System.arraycopy(this.userIds, position + 1, userIds, position, size - position - 1);
+            System.arraycopy(this.members, position + 1, remaining, position, size - position - 1);
+
+            return new Slice(thresholds, userIds, remaining);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.kinesisflow.engine;
+
+import com.kinesisflow.logging.RateLimitedLogger;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Key-level parallelism inside a partition: records are queued to one mailbox per asset and each
+ * mailbox is drained by at most one virtual thread at a time, so assets of the same partition
+ * progress independently while every asset keeps its order.
+ * Records are acknowledged as they complete; with async acks the container only commits a
+ * partition up to the lowest offset below which every record has been acknowledged.
+ * Failures are retried in the mailbox with the same back-off as the DefaultErrorHandler and then
+ * published to the DLQ by the same recoverer. Like the DefaultErrorHandler, a record the DLQ does
+ * not take is never committed: its mailbox keeps retrying the publish, holding back the asset and
+ * the partition's commits until it succeeds. A mailbox is dropped as soon as it runs empty, so
+ * the map only holds assets with records pending.
+ */
+@Component
+public class AssetMailboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetMailboxDispatcher.class);
+    private static final RateLimitedLogger rateLimitedLogger = RateLimitedLogger.of(logger, 10, Duration.ofSeconds(10));
+    // Floor between publish attempts when the back-off allows none
+    private static final long MIN_RECOVERY_WAIT_MS = 1000;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, AtomicInteger> inFlightByPartition = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final DeadLetterPublishingRecoverer recoverer;
+    private final BackOff backOff;
+    private volatile boolean stopping;
+
+    public AssetMailboxDispatcher(DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                  BackOff deadLetterBackOff,
+                                  @Value("${kinesisflow.consumer.mailbox.max-in-flight:10000}") int maxInFlight,
+                                  MeterRegistry meterRegistry) {
+        this.recoverer = deadLetterPublishingRecoverer;
+        this.backOff = deadLetterBackOff;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+
+        Gauge.builder("kinesisflow.consumer.mailbox.in-flight", this, AssetMailboxDispatcher::inFlight)
+                .description("Records dispatched to asset mailboxes and not yet acknowledged")
+                .register(meterRegistry);
+        Gauge.builder("kinesisflow.consumer.mailbox.count", mailboxes, Map::size)
+                .description("Number of asset mailboxes")
+                .register(meterRegistry);
+    }
+
+    /*
+     * Called on the consumer thread. Blocks while maxInFlight records are pending, which holds
+     * the poll loop back instead of buffering an unbounded backlog.
+     */
+    public void dispatch(ConsumerRecord<?, ?> record, String key, Acknowledgment acknowledgment, Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a mailbox slot", e);
+        }
+
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        AtomicInteger partitionInFlight = inFlightByPartition.computeIfAbsent(partition, tp -> new AtomicInteger());
+        partitionInFlight.incrementAndGet();
+
+        Runnable processing = () -> {
+            try {
+                if (process(record, task)) {
+                    acknowledgment.acknowledge();
+                }
+            } finally {
+                partitionInFlight.decrementAndGet();
+                permits.release();
+            }
+        };
+        // Offered under the map's lock for the key, so an idle mailbox cannot be dropped in between
+        mailboxes.compute(key, (k, mailbox) -> {
+            Mailbox target = mailbox != null ? mailbox : new Mailbox(k);
+            target.offer(processing);
+            return target;
+        });
+    }
+
+    // Returns false only on shutdown or interrupt; the record then stays uncommitted and is redelivered
+    private boolean process(ConsumerRecord<?, ?> record, Runnable task) {
+        BackOffExecution execution = backOff.start();
+        while (true) {
+            try {
+                task.run();
+                return true;
+            } catch (RuntimeException e) {
+                long wait = execution.nextBackOff();
+                if (wait == BackOffExecution.STOP) {
+                    return recover(record, e);
+                }
+                logger.warn("Processing failed for {}-{}@{}, retrying in {} ms: {}",
+                        record.topic(), record.partition(), record.offset(), wait, e.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /*
+     * Publishes to the DLQ until it takes the record, with the same back-off between attempts
+     * (restarted when exhausted). Returns false only on shutdown or interrupt; the record then
+     * stays unacknowledged and is redelivered.
+     */
+    private boolean recover(ConsumerRecord<?, ?> record, RuntimeException cause) {
+        BackOffExecution execution = backOff.start();
+        while (!stopping) {
+            try {
+                recoverer.accept(record, cause);
+                return true;
+            } catch (RuntimeException e) {
+                long wait = execution.nextBackOff();
+                if (wait == BackOffExecution.STOP) {
+                    execution = backOff.start();
+                    wait = execution.nextBackOff();
+                }
+                wait = wait == BackOffExecution.STOP ? MIN_RECOVERY_WAIT_MS : wait;
+                rateLimitedLogger.error("Could not publish {}-{}@{} to the DLQ, retrying in {} ms: {}",
+                        record.topic(), record.partition(), record.offset(), wait, e.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Waits until the records already dispatched for the given partitions are done, so their acks
+     * reach the container before it commits on revocation. Gives up after the timeout; anything
+     * still running is redelivered to the new owner.
+     */
+    public void awaitPartitions(Collection<TopicPartition> partitions, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (TopicPartition partition : partitions) {
+            AtomicInteger partitionInFlight = inFlightByPartition.get(partition);
+            while (partitionInFlight != null && partitionInFlight.get() > 0) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("Timed out waiting for {} in-flight records of {}", partitionInFlight.get(), partition);
+                    return;
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            inFlightByPartition.remove(partition);
+        }
+    }
+
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        executor.shutdown();
+    }
+
+    private final class Mailbox {
+
+        private final String key;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(String key) {
+            this.key = key;
+        }
+
+        void offer(Runnable task) {
+            queue.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Runnable next;
+            while ((next = queue.poll()) != null) {
+                next.run();
+            }
+            scheduled.set(false);
+            // A record offered between the last poll and the reset would otherwise wait for the next one
+            if (!queue.isEmpty()) {
+                schedule();
+                return;
+            }
+            // Idle: offers for the key are serialized with this check, so nothing can be lost
+            mailboxes.computeIfPresent(key, (k, mailbox) ->
+                    mailbox == this && queue.isEmpty() && !scheduled.get() ? null : mailbox);
+        }
+    }
+}
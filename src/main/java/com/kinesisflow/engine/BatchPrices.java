@@ -0,0 +1,83 @@
+package com.kinesisflow.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Price path of every asset in one consumed batch, in fixed-point units: the price before the
+ * batch and the price after each of the asset's records, by record index.
+ * When the batch fails at a record, that record and everything after it are redelivered, so each
+ * asset has to be left at its price after its last record before the failed one, or at its price
+ * before the batch if it has none. Redelivered ticks then cross exactly what they would have.
+ */
+public final class BatchPrices {
+
+    private final Map<String, Path> paths = new LinkedHashMap<>();
+
+    public void add(String asset, int index, long price) {
+        paths.computeIfAbsent(asset, a -> new Path()).add(index, price);
+    }
+
+    public Iterable<String> assets() {
+        return paths.keySet();
+    }
+
+    public void previous(String asset, Long price) {
+        paths.get(asset).previous = price;
+    }
+
+    public Long previous(String asset) {
+        return paths.get(asset).previous;
+    }
+
+    public long last(String asset) {
+        Path path = paths.get(asset);
+        return path.prices[path.size - 1];
+    }
+
+    public Map<String, Long> lastPrices() {
+        Map<String, Long> last = new HashMap<>();
+        for (String asset : paths.keySet()) {
+            last.put(asset, last(asset));
+        }
+        return last;
+    }
+
+    // Price of each asset once every record before index is done; null if it never had one
+    public Map<String, Long> pricesBefore(int index) {
+        Map<String, Long> prices = new HashMap<>();
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            prices.put(entry.getKey(), entry.getValue().priceBefore(index));
+        }
+        return prices;
+    }
+
+    private static final class Path {
+
+        private Long previous;
+        private int[] indexes = new int[4];
+        private long[] prices = new long[4];
+        private int size;
+
+        void add(int index, long price) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            indexes[size] = index;
+            prices[size] = price;
+            size++;
+        }
+
+        // Records are added in index order
+        Long priceBefore(int index) {
+            Long price = previous;
+            for (int i = 0; i < size && indexes[i] < index; i++) {
+                price = prices[i];
+            }
+            return price;
+        }
+    }
+}
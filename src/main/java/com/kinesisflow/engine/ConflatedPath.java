@@ -0,0 +1,113 @@
+package com.kinesisflow.engine;
+
+import com.kinesisflow.record.CryptoEvent;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Reduced price path of one asset inside a conflation window. It keeps the latest tick and the
+ * window's min and max in the order they happened, plus only those intermediate turning points
+ * without which a directional crossing would change: replaying the kept ticks through the engine
+ * fires exactly the alerts the full sequence would have fired.
+ *
+ * A tick k can go when it is not a new extreme of the ticks before it and later ticks reach both
+ * at least as high and at least as low: its rise [min before k, p_k) and its fall [p_k, max before k)
+ * are then covered by those later ticks. Oscillations collapse; a path that still needs more than
+ * maxPoints ticks reports isFull() and is flushed early rather than approximated.
+ * The first tick of every window is kept, so a window never depends on what came before it:
+ * ticks of the asset that reach the engine by another ingest path cannot invalidate the pruning.
+ * Not thread-safe.
+ */
+public final class ConflatedPath {
+
+    private final int maxPoints;
+    private final List<CryptoEvent> points;
+
+    public ConflatedPath(int maxPoints) {
+        this.maxPoints = Math.max(3, maxPoints);
+        this.points = new ArrayList<>(this.maxPoints + 1);
+    }
+
+    public void add(CryptoEvent tick) {
+        int size = points.size();
+        if (size > 0) {
+            CryptoEvent last = points.get(size - 1);
+            int direction = tick.price().compareTo(last.price());
+            // Same price: only the newer tick matters
+            if (direction == 0) {
+                points.set(size - 1, tick);
+                return;
+            }
+            // Still moving the same way: the previous tick lies inside the new segment
+            if (size > 1 && Integer.signum(last.price().compareTo(points.get(size - 2).price())) == direction) {
+                points.set(size - 1, tick);
+                prune();
+                return;
+            }
+        }
+        points.add(tick);
+        prune();
+    }
+
+    public boolean isFull() {
+        return points.size() >= maxPoints;
+    }
+
+    public boolean isEmpty() {
+        return points.isEmpty();
+    }
+
+    public List<CryptoEvent> drain() {
+        List<CryptoEvent> drained = new ArrayList<>(points);
+        points.clear();
+        return drained;
+    }
+
+    private void prune() {
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            for (int k = 1; k < points.size() - 1; k++) {
+                if (isRedundant(k)) {
+                    points.remove(k);
+                    removed = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    // k > 0: the window's first tick is never redundant
+    private boolean isRedundant(int k) {
+        CryptoEvent point = points.get(k);
+        BigDecimal next = points.get(k + 1).price();
+        BigDecimal before = points.get(k - 1).price();
+        // Repeated price, or inside a monotone run left behind by an earlier removal
+        if (point.price().compareTo(next) == 0
+                || Integer.signum(point.price().compareTo(before)) == Integer.signum(next.compareTo(point.price()))) {
+            return true;
+        }
+
+        boolean belowEarlierMax = false;
+        boolean aboveEarlierMin = false;
+        for (int i = 0; i < k; i++) {
+            int cmp = point.price().compareTo(points.get(i).price());
+            belowEarlierMax |= cmp <= 0;
+            aboveEarlierMin |= cmp >= 0;
+        }
+        if (!belowEarlierMax || !aboveEarlierMin) {
+            return false;
+        }
+
+        boolean reachedHigher = false;
+        boolean reachedLower = false;
+        for (int j = k + 1; j < points.size(); j++) {
+            int cmp = points.get(j).price().compareTo(point.price());
+            reachedHigher |= cmp >= 0;
+            reachedLower |= cmp <= 0;
+        }
+        return reachedHigher && reachedLower;
+    }
+}
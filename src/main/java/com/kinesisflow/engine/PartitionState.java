@@ -0,0 +1,62 @@
+package com.kinesisflow.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/*
+ * Engine state of one assigned partition. Records are keyed by asset, so every asset lives in
+ * exactly one partition and has a single writer: the consumer thread that owns the partition,
+ * or the asset's mailbox when AssetMailboxDispatcher fans the partition out. The maps are
+ * concurrent only because mailboxes of different assets share them.
+ * Last prices are written through to Redis so a new owner can resume after a rebalance.
+ */
+public final class PartitionState {
+
+    private final Map<String, Long> lastPrices = new ConcurrentHashMap<>();
+    private final Map<String, RuleKeys> ruleKeys = new ConcurrentHashMap<>();
+    private volatile long epoch;
+
+    PartitionState(long epoch) {
+        this.epoch = epoch;
+    }
+
+    // Drops everything cached before the shared state was reset (e.g. a cleanup of Redis)
+    void syncEpoch(long current) {
+        if (epoch != current) {
+            resetTo(current);
+        }
+    }
+
+    private synchronized void resetTo(long current) {
+        if (epoch != current) {
+            lastPrices.clear();
+            ruleKeys.clear();
+            epoch = current;
+        }
+    }
+
+    public Long lastPrice(String asset) {
+        return lastPrices.get(asset);
+    }
+
+    public void lastPrice(String asset, long units) {
+        lastPrices.put(asset, units);
+    }
+
+    public void forget(String asset) {
+        lastPrices.remove(asset);
+    }
+
+    public int size() {
+        return lastPrices.size();
+    }
+
+    // Rule index keys of the hot assets, built once instead of concatenated on every tick
+    public RuleKeys ruleKeys(String asset, BiFunction<String, String, String> keyFactory) {
+        return ruleKeys.computeIfAbsent(asset, a -> new RuleKeys(keyFactory.apply(a, "1"), keyFactory.apply(a, "-1")));
+    }
+
+    public record RuleKeys(String greaterThan, String lessThan) {
+    }
+}
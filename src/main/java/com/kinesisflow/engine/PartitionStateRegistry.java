@@ -0,0 +1,78 @@
+package com.kinesisflow.engine;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Per-partition engine state, created when a partition is assigned to one of the listener's
+ * consumer threads and dropped when it is revoked or lost. Registered as the rebalance listener
+ * of the market data containers, so the callbacks run on the thread that owns the partitions.
+ */
+@Component
+public class PartitionStateRegistry implements ConsumerAwareRebalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionStateRegistry.class);
+
+    private final Map<TopicPartition, PartitionState> states = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AssetMailboxDispatcher mailboxDispatcher;
+    private final Duration revokeDrainTimeout;
+
+    public PartitionStateRegistry(AssetMailboxDispatcher mailboxDispatcher,
+                                  @Value("${kinesisflow.consumer.mailbox.revoke-drain-timeout-ms:5000}") long revokeDrainTimeoutMs) {
+        this.mailboxDispatcher = mailboxDispatcher;
+        this.revokeDrainTimeout = Duration.ofMillis(revokeDrainTimeoutMs);
+    }
+
+    public PartitionState stateFor(String topic, int partition) {
+        long current = epoch.get();
+        PartitionState state = states.computeIfAbsent(new TopicPartition(topic, partition), tp -> new PartitionState(current));
+        state.syncEpoch(current);
+        return state;
+    }
+
+    public int assignedPartitions() {
+        return states.size();
+    }
+
+    // Called when Redis is wiped; each owner thread clears its state on next access
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        long current = epoch.get();
+        partitions.forEach(tp -> states.put(tp, new PartitionState(current)));
+        logger.info("Partitions assigned: {}", partitions);
+    }
+
+    // Records still queued in asset mailboxes must be acknowledged before the revocation commit
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        mailboxDispatcher.awaitPartitions(partitions, revokeDrainTimeout);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(states::remove);
+        logger.info("Partitions revoked: {}", partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(states::remove);
+        logger.warn("Partitions lost: {}", partitions);
+    }
+}
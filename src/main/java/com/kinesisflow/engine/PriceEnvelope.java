@@ -0,0 +1,27 @@
+package com.kinesisflow.engine;
+
+/*
+ * Envelope of the price path an asset followed inside one batch, in fixed-point units: the price
+ * before the batch (null if the asset had none), the running min and max over the whole path and
+ * the final price.
+ * Every threshold a single tick can cross lies in [min, max), so two range lookups cover the batch.
+ */
+public record PriceEnvelope(Long previous, long min, long max, long last) {
+
+    public static PriceEnvelope of(Long previous, long[] ticks) {
+        long min = previous != null ? previous : ticks[0];
+        long max = min;
+        long last = min;
+
+        for (long price : ticks) {
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+            last = price;
+        }
+        return new PriceEnvelope(previous, min, max, last);
+    }
+
+    public boolean hasMovement() {
+        return min < max;
+    }
+}
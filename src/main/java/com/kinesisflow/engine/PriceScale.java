@@ -0,0 +1,79 @@
+package com.kinesisflow.engine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Fixed-point price representation used by the engine, the rule index and the Redis encoding.
+ * A price is a long number of units of 10^-scale, with a configurable scale per asset, so
+ * comparisons are exact and ZSET scores stay exact integers (below 2^53) for high-priced assets.
+ */
+@Component
+public class PriceScale {
+
+    private static final long MAX_EXACT_SCORE = 1L << 53;
+
+    private final int defaultScale;
+    private final Map<String, Integer> scales = new HashMap<>();
+
+    public PriceScale(@Value("${kinesisflow.engine.price-scale.default:2}") int defaultScale,
+                      @Value("${kinesisflow.engine.price-scale.overrides:}") String overrides) {
+        this.defaultScale = defaultScale;
+
+        for (String entry : overrides.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid price scale override '" + entry + "', expected ASSET=scale");
+            }
+            scales.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    public int scaleOf(String asset) {
+        return scales.getOrDefault(asset, defaultScale);
+    }
+
+    public long toUnits(String asset, BigDecimal price) {
+        // setScale returns the same instance when the price already carries the asset's scale
+        return price.setScale(scaleOf(asset), RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal toPrice(String asset, long units) {
+        return BigDecimal.valueOf(units, scaleOf(asset));
+    }
+
+    public double toScore(long units) {
+        if (Math.abs(units) >= MAX_EXACT_SCORE) {
+            throw new ArithmeticException("Price units " + units + " exceed the exact range of a Redis score");
+        }
+        return units;
+    }
+
+    public String encode(long units) {
+        return Long.toString(units);
+    }
+
+    /*
+     * Decodes a stored last price. Values written before the fixed-point encoding are plain
+     * decimal prices ("45000.0"), everything else is an integer number of units.
+     */
+    public long decode(String asset, String value) {
+        boolean integral = true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+                integral = false;
+                break;
+            }
+        }
+        return integral ? Long.parseLong(value) : toUnits(asset, new BigDecimal(value));
+    }
+}
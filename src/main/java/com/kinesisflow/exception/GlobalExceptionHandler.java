@@ -87,6 +87,13 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.CONFLICT, null);
     }
 
+    @ExceptionHandler(IngestBackPressureException.class)
+    public ResponseEntity<Map<String, Object>> handleIngestBackPressure(IngestBackPressureException ex) {
+        logger.warn("Ingestion rejected: {}", ex.getMessage());
+        ResponseEntity<Map<String, Object>> response = buildErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, null);
+        return ResponseEntity.status(response.getStatusCode()).header("Retry-After", "1").body(response.getBody());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleAllExceptions(Exception ex) {
         Throwable root = ex;
@@ -0,0 +1,7 @@
+package com.kinesisflow.exception;
+
+public class IngestBackPressureException extends RuntimeException {
+    public IngestBackPressureException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,34 @@
+package com.kinesisflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// The event's duration is the socket write; queueTime is how long the message waited before it
+@Name("com.kinesisflow.Delivery")
+@Label("Notification Delivery")
+@Category({"KinesisFlow", "Notifications"})
+@Description("A message written to a notification WebSocket session")
+@StackTrace(false)
+public class DeliveryEvent extends Event {
+
+    @Label("User")
+    public String userId;
+
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Queue Time")
+    @Description("Time in the session's outbound queue before the write started")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueTime;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,161 @@
+package com.kinesisflow.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * /actuator/flightrecorder: one bounded continuous Flight Recorder recording, controlled at
+ * runtime without attaching an agent.
+ *   GET          state of the recording
+ *   POST         start it; maxAgeSeconds and maxSizeMb are optional and capped by the configuration
+ *   DELETE       stop and discard it
+ *   GET /dump    download what it holds as a .jfr file, the recording keeps running
+ * The JDK events follow the configured settings (default or profile); the kinesisflow events
+ * (Match, Publish, Delivery) are always enabled. Events that capture the environment, system
+ * properties or JVM arguments are always disabled: they would put credentials into the dump.
+ */
+@Component
+@WebEndpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderEndpoint.class);
+    private static final long MB = 1024 * 1024;
+    private static final List<String> SENSITIVE_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private final String settings;
+    private final long maxAgeSeconds;
+    private final long maxSizeMb;
+    private Recording recording;
+
+    public FlightRecorderEndpoint(@Value("${kinesisflow.jfr.settings:default}") String settings,
+                                  @Value("${kinesisflow.jfr.max-age-seconds:900}") long maxAgeSeconds,
+                                  @Value("${kinesisflow.jfr.max-size-mb:100}") long maxSizeMb) {
+        this.settings = settings;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.maxSizeMb = maxSizeMb;
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording == null ? "STOPPED" : recording.getState().name());
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime());
+            status.put("settings", settings);
+            status.put("maxAgeSeconds", recording.getMaxAge().toSeconds());
+            status.put("maxSizeMb", recording.getMaxSize() / MB);
+        }
+        return status;
+    }
+
+    // Starting while a recording runs leaves it as it is
+    @WriteOperation
+    public synchronized Map<String, Object> start(@OptionalParameter Long maxAgeSeconds, @OptionalParameter Long maxSizeMb) {
+        if (recording != null) {
+            return status();
+        }
+
+        Recording started;
+        try {
+            started = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Flight Recorder settings '" + settings + "' could not be read", e);
+        }
+        started.setName("kinesisflow");
+        started.setToDisk(true);
+        started.setMaxAge(Duration.ofSeconds(cap(maxAgeSeconds, this.maxAgeSeconds)));
+        started.setMaxSize(cap(maxSizeMb, this.maxSizeMb) * MB);
+        started.enable(MatchEvent.class);
+        started.enable(PublishEvent.class);
+        started.enable(DeliveryEvent.class);
+        SENSITIVE_EVENTS.forEach(started::disable);
+        started.start();
+        recording = started;
+
+        log.info("Flight recording started: settings {}, max age {} s, max size {} MB",
+                settings, started.getMaxAge().toSeconds(), started.getMaxSize() / MB);
+        return status();
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            log.info("Flight recording stopped");
+        }
+        return status();
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump(@Selector String action) throws IOException {
+        if (!"dump".equals(action) || recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path file = Files.createTempFile("kinesisflow-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new WebEndpointResponse<>(new TemporaryRecordingResource(file), WebEndpointResponse.STATUS_OK);
+    }
+
+    private static long cap(Long requested, long limit) {
+        return requested == null || requested <= 0 ? limit : Math.min(requested, limit);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    // The dump is deleted once the response has been written
+    private static final class TemporaryRecordingResource extends FileSystemResource {
+
+        TemporaryRecordingResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFilePath(), StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        // Not a plain file to the converters, so the stream above is always what gets read
+        @Override
+        public boolean isFile() {
+            return false;
+        }
+    }
+}
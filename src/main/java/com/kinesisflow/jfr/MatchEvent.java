@@ -0,0 +1,35 @@
+package com.kinesisflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * One asset's ticks matched against the alert thresholds: a single tick in record mode, every
+ * tick of the asset in the poll in batch mode. The duration covers the lookup only in record
+ * mode; in batch mode it also covers publishing, which is interleaved with the replay.
+ */
+@Name("com.kinesisflow.Match")
+@Label("Alert Match")
+@Category({"KinesisFlow", "Engine"})
+@Description("Ticks of one asset matched against the alert thresholds")
+@StackTrace(false)
+public class MatchEvent extends Event {
+
+    @Label("Asset")
+    public String asset;
+
+    @Label("Batch Size")
+    @Description("Ticks of the asset matched together")
+    public int batchSize;
+
+    @Label("Candidates Scanned")
+    @Description("Threshold entries inside the crossed price range")
+    public int candidates;
+
+    @Label("Users Matched")
+    public int usersMatched;
+}
@@ -0,0 +1,24 @@
+package com.kinesisflow.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.kinesisflow.Publish")
+@Label("Notification Publish")
+@Category({"KinesisFlow", "Notifications"})
+@Description("Notification batches of one tick serialized and published to pub/sub")
+@StackTrace(false)
+public class PublishEvent extends Event {
+
+    @Label("Channels")
+    public int channels;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long bytes;
+}
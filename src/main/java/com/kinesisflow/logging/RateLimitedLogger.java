@@ -0,0 +1,105 @@
+package com.kinesisflow.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Log lines that can fire once per event on the hot path, bounded: at most permits lines per
+ * interval reach the logger and the rest are only counted, then reported as one line when the
+ * next interval opens. Disabled levels return before touching the limiter. Thread-safe.
+ */
+public final class RateLimitedLogger {
+
+    private final Logger logger;
+    private final int permits;
+    private final long intervalNanos;
+    private final AtomicLong intervalStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private RateLimitedLogger(Logger logger, int permits, Duration interval) {
+        this.logger = logger;
+        this.permits = permits;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public static RateLimitedLogger of(Logger logger, int permits, Duration interval) {
+        return new RateLimitedLogger(logger, permits, interval);
+    }
+
+    public void debug(String format, Object arg) {
+        if (logger.isDebugEnabled() && acquire(Level.DEBUG)) {
+            logger.debug(format, arg);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (logger.isDebugEnabled() && acquire(Level.DEBUG)) {
+            logger.debug(format, arg1, arg2);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (logger.isDebugEnabled() && acquire(Level.DEBUG)) {
+            logger.debug(format, args);
+        }
+    }
+
+    public void warn(String format, Object arg) {
+        if (logger.isWarnEnabled() && acquire(Level.WARN)) {
+            logger.warn(format, arg);
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (logger.isWarnEnabled() && acquire(Level.WARN)) {
+            logger.warn(format, arg1, arg2);
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (logger.isWarnEnabled() && acquire(Level.WARN)) {
+            logger.warn(format, args);
+        }
+    }
+
+    public void error(String format, Object arg) {
+        if (logger.isErrorEnabled() && acquire(Level.ERROR)) {
+            logger.error(format, arg);
+        }
+    }
+
+    public void error(String format, Object arg1, Object arg2) {
+        if (logger.isErrorEnabled() && acquire(Level.ERROR)) {
+            logger.error(format, arg1, arg2);
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (logger.isErrorEnabled() && acquire(Level.ERROR)) {
+            logger.error(format, args);
+        }
+    }
+
+    private boolean acquire(Level level) {
+        long now = System.nanoTime();
+        long start = intervalStart.get();
+        // Only the caller that moves the interval forward resets it and reports what was dropped
+        if (now - start >= intervalNanos && intervalStart.compareAndSet(start, now)) {
+            used.set(0);
+            long dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                logger.atLevel(level).log("{} similar messages suppressed by rate limiting", dropped);
+            }
+        }
+        if (used.incrementAndGet() <= permits) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+}
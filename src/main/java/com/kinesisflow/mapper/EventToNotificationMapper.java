@@ -2,6 +2,10 @@ package com.kinesisflow.mapper;
 
 import com.kinesisflow.record.Notification;
 import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.record.NotificationBatch;
+
+import java.util.Collection;
+import java.util.List;
 
 public class EventToNotificationMapper {
 
@@ -12,4 +16,12 @@ public class EventToNotificationMapper {
                 user,
                 event.timestamp());
     }
+
+    public static NotificationBatch mapToNotificationBatch(CryptoEvent event, Collection<String> users) {
+        return new NotificationBatch(
+                event.asset(),
+                event.price(),
+                event.timestamp(),
+                List.copyOf(users));
+    }
 }
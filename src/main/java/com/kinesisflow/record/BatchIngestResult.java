@@ -0,0 +1,30 @@
+package com.kinesisflow.record;
+
+import java.util.List;
+
+public record BatchIngestResult(
+        int received,
+        int accepted,
+        int invalid,
+        int rejected,
+        int failed,
+        // Reading stopped at a JSON syntax error; nothing after it was read
+        boolean truncated,
+        List<IngestItemStatus> items) {
+
+    public static BatchIngestResult of(List<IngestItemStatus> items, boolean truncated) {
+        int[] counts = new int[IngestItemStatus.Status.values().length];
+        items.forEach(item -> counts[item.status().ordinal()]++);
+        return new BatchIngestResult(items.size(),
+                counts[IngestItemStatus.Status.ACCEPTED.ordinal()],
+                counts[IngestItemStatus.Status.INVALID.ordinal()],
+                counts[IngestItemStatus.Status.REJECTED.ordinal()],
+                counts[IngestItemStatus.Status.FAILED.ordinal()],
+                truncated,
+                items);
+    }
+
+    public boolean allAccepted() {
+        return accepted == received;
+    }
+}
@@ -0,0 +1,30 @@
+package com.kinesisflow.record;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/*
+ * Control message of the ingest WebSocket. A "credit" message grants the initial window; an "ack"
+ * reports the outcome of one batch frame and returns its events as new credits.
+ * errors only lists the items that were not accepted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IngestAck(
+        String type,
+        Long sequence,
+        Integer accepted,
+        List<IngestItemStatus> errors,
+        int credits) {
+
+    public static IngestAck grant(int credits) {
+        return new IngestAck("credit", null, null, null, credits);
+    }
+
+    public static IngestAck of(long sequence, List<IngestItemStatus> items, int credits) {
+        List<IngestItemStatus> errors = items.stream()
+                .filter(item -> item.status() != IngestItemStatus.Status.ACCEPTED)
+                .toList();
+        return new IngestAck("ack", sequence, items.size() - errors.size(), errors, credits);
+    }
+}
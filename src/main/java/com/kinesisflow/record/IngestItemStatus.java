@@ -0,0 +1,25 @@
+package com.kinesisflow.record;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IngestItemStatus(
+        int index,
+        Status status,
+        String error) {
+
+    public enum Status {
+        // Acknowledged by Kafka
+        ACCEPTED,
+        // Malformed or failed validation, never sent
+        INVALID,
+        // No producer slot before the deadline, safe to retry
+        REJECTED,
+        // Sent but not acknowledged
+        FAILED
+    }
+
+    public static IngestItemStatus accepted(int index) {
+        return new IngestItemStatus(index, Status.ACCEPTED, null);
+    }
+}
@@ -0,0 +1,31 @@
+package com.kinesisflow.record;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/*
+ * One pub/sub message per tick: every user whose alert the tick crossed.
+ * Subscribers expand it into one Notification per locally connected user.
+ * The trace only travels between nodes; it is never part of what users receive.
+ */
+public record NotificationBatch(
+        String asset,
+        BigDecimal price,
+        long timestamp,
+        List<String> users,
+        @JsonInclude(JsonInclude.Include.NON_NULL) PipelineTrace trace) {
+
+    public NotificationBatch(String asset, BigDecimal price, long timestamp, List<String> users) {
+        this(asset, price, timestamp, users, null);
+    }
+
+    public NotificationBatch withTrace(PipelineTrace trace) {
+        return new NotificationBatch(asset, price, timestamp, users, trace);
+    }
+
+    public Notification forUser(String user) {
+        return new Notification(asset, price, user, timestamp);
+    }
+}
@@ -0,0 +1,18 @@
+package com.kinesisflow.record;
+
+/*
+ * Wall clock stage timestamps (epoch ms) of one tick on its way to the sockets: handed to the
+ * producer, appended by the broker, picked up by the engine, published to pub/sub.
+ * appendedAt is 0 when the topic keeps producer timestamps; publishedAt is 0 until published.
+ * Stages on different nodes are only as comparable as the nodes' clocks.
+ */
+public record PipelineTrace(
+        long ingestedAt,
+        long appendedAt,
+        long consumedAt,
+        long publishedAt) {
+
+    public PipelineTrace published(long at) {
+        return new PipelineTrace(ingestedAt, appendedAt, consumedAt, at);
+    }
+}
@@ -0,0 +1,12 @@
+package com.kinesisflow.record;
+
+import java.util.List;
+
+public record PriceCrossing(
+        Long previousPrice,
+        List<String> members) {
+
+    public boolean hasPreviousPrice() {
+        return previousPrice != null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.kinesisflow.record;
+
+import java.util.List;
+
+// A rule index change as published by rule-index-update.lua; op "reset" carries no key
+public record RuleIndexChange(
+        String key,
+        long version,
+        String op,
+        List<String> args) {
+}
@@ -0,0 +1,52 @@
+package com.kinesisflow.serde;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Shared, append-only list of well-known assets. Producers and consumers must be configured with
+ * the same list: an asset's id is its 1-based position. Id 0 means the name travels inline.
+ */
+public final class AssetDictionary {
+
+    // Kafka client property holding the comma-separated dictionary
+    public static final String CONFIG = "kinesisflow.serde.asset.dictionary";
+
+    private final String[] assets;
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private AssetDictionary(String[] assets) {
+        this.assets = assets;
+        for (int i = 0; i < assets.length; i++) {
+            ids.putIfAbsent(assets[i], i + 1);
+        }
+    }
+
+    public static AssetDictionary fromConfigs(Map<String, ?> configs) {
+        Object csv = configs.get(CONFIG);
+        return of(csv != null ? csv.toString() : null);
+    }
+
+    public static AssetDictionary of(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return new AssetDictionary(new String[0]);
+        }
+        String[] assets = csv.split(",");
+        for (int i = 0; i < assets.length; i++) {
+            assets[i] = assets[i].trim().intern();
+        }
+        return new AssetDictionary(assets);
+    }
+
+    public int idOf(String asset) {
+        return ids.getOrDefault(asset, 0);
+    }
+
+    // Returns the canonical String instance, so decoded events share one object per asset
+    public String assetOf(int id) {
+        if (id < 1 || id > assets.length) {
+            throw new IllegalArgumentException("Unknown asset id " + id);
+        }
+        return assets[id - 1];
+    }
+}
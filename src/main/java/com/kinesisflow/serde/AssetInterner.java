@@ -0,0 +1,73 @@
+package com.kinesisflow.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Maps the UTF-8 bytes of an asset symbol to one canonical String without allocating on a hit.
+ * Open addressing over a small power-of-two table; once maxEntries symbols are known, new ones
+ * are decoded but no longer cached, so hostile input cannot grow it without bound.
+ * Not thread-safe: each deserializer (one per consumer thread) owns its interner.
+ */
+final class AssetInterner {
+
+    private final int maxEntries;
+    private byte[][] keys;
+    private String[] values;
+    private int size;
+
+    AssetInterner(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.keys = new byte[64][];
+        this.values = new String[64];
+    }
+
+    String intern(byte[] data, int start, int end) {
+        int hash = hash(data, start, end);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                String value = new String(data, start, end - start, StandardCharsets.UTF_8);
+                if (size < maxEntries) {
+                    keys[slot] = Arrays.copyOfRange(data, start, end);
+                    values[slot] = value;
+                    if (++size * 2 > keys.length) {
+                        grow();
+                    }
+                }
+                return value;
+            }
+            if (Arrays.equals(key, 0, key.length, data, start, end)) {
+                return values[slot];
+            }
+        }
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) {
+                continue;
+            }
+            int slot = hash(oldKeys[i], 0, oldKeys[i].length) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash(byte[] data, int start, int end) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ data[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,62 @@
+package com.kinesisflow.serde;
+
+import com.kinesisflow.record.CryptoEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Frame of several ticks sent by feed adapters over the ingest WebSocket:
+ *   magic (0xC2) | varint sequence | varint count | count x (varint length | binary CryptoEvent)
+ * Each event uses CryptoEventBinaryFormat, length-prefixed so it can be decoded in place.
+ * The sequence is chosen by the client and echoed in the acknowledgement of the frame.
+ */
+public final class CryptoEventBatchFormat {
+
+    public static final byte MAGIC = (byte) 0xC2;
+
+    public record Batch(long sequence, List<CryptoEvent> events) {
+    }
+
+    private CryptoEventBatchFormat() {
+    }
+
+    public static byte[] encode(long sequence, List<CryptoEvent> events, AssetDictionary dictionary) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + events.size() * 16);
+        out.write(MAGIC);
+        CryptoEventBinaryFormat.writeVarint(out, sequence);
+        CryptoEventBinaryFormat.writeVarint(out, events.size());
+        for (CryptoEvent event : events) {
+            byte[] encoded = CryptoEventBinaryFormat.encode(event, dictionary);
+            CryptoEventBinaryFormat.writeVarint(out, encoded.length);
+            out.write(encoded, 0, encoded.length);
+        }
+        return out.toByteArray();
+    }
+
+    // Throws IllegalArgumentException on a malformed frame or one holding more than maxEvents
+    public static Batch decode(byte[] data, AssetDictionary dictionary, int maxEvents) {
+        CryptoEventBinaryFormat.Reader in = new CryptoEventBinaryFormat.Reader(data, 0, data.length);
+        if (in.readByte() != (MAGIC & 0xFF)) {
+            throw new IllegalArgumentException("Not a CryptoEvent batch frame");
+        }
+        long sequence = in.readVarint();
+        long count = in.readVarint();
+        if (count > maxEvents) {
+            throw new IllegalArgumentException("Batch of " + count + " events exceeds the limit of " + maxEvents);
+        }
+
+        List<CryptoEvent> events = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            long length = in.readVarint();
+            int start = in.position();
+            in.skip((int) Math.min(length, Integer.MAX_VALUE));
+            events.add(CryptoEventBinaryFormat.decode(data, start, (int) length, dictionary));
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes after the last event of the batch");
+        }
+        return new Batch(sequence, events);
+    }
+}
@@ -0,0 +1,166 @@
+package com.kinesisflow.serde;
+
+import com.kinesisflow.record.CryptoEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Compact binary encoding of a CryptoEvent:
+ *   magic (0xC1) | flags | varint asset id [| varint length | UTF-8 name when id is 0]
+ *   | zigzag varint price scale | zigzag varint unscaled price | zigzag varint timestamp
+ * Flags mark a null asset or price so invalid events still reach the consumer's validation.
+ * 0xC1 never starts a UTF-8 document, which lets a reader tell binary from JSON by the first byte.
+ */
+public final class CryptoEventBinaryFormat {
+
+    public static final byte MAGIC = (byte) 0xC1;
+
+    private static final int NULL_ASSET = 1;
+    private static final int NULL_PRICE = 1 << 1;
+    private static final int MAX_LENGTH = 1 << 16;
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private CryptoEventBinaryFormat() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    // Prices whose unscaled value does not fit in a long have no binary form
+    public static boolean canEncode(CryptoEvent event) {
+        if (event.price() == null) {
+            return true;
+        }
+        BigInteger unscaled = event.price().unscaledValue();
+        return unscaled.compareTo(LONG_MIN) >= 0 && unscaled.compareTo(LONG_MAX) <= 0;
+    }
+
+    public static byte[] encode(CryptoEvent event, AssetDictionary dictionary) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(24);
+        out.write(MAGIC);
+        out.write((event.asset() == null ? NULL_ASSET : 0) | (event.price() == null ? NULL_PRICE : 0));
+
+        if (event.asset() != null) {
+            int id = dictionary.idOf(event.asset());
+            writeVarint(out, id);
+            if (id == 0) {
+                byte[] name = event.asset().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, name.length);
+                out.write(name, 0, name.length);
+            }
+        }
+        if (event.price() != null) {
+            writeVarint(out, zigzag(event.price().scale()));
+            writeVarint(out, zigzag(event.price().unscaledValue().longValueExact()));
+        }
+        writeVarint(out, zigzag(event.timestamp()));
+        return out.toByteArray();
+    }
+
+    public static CryptoEvent decode(byte[] data, AssetDictionary dictionary) {
+        return decode(new Reader(data, 0, data.length), dictionary);
+    }
+
+    // Decodes one event from a slice of a larger buffer, such as a batch frame
+    public static CryptoEvent decode(byte[] data, int offset, int length, AssetDictionary dictionary) {
+        return decode(new Reader(data, offset, offset + length), dictionary);
+    }
+
+    static CryptoEvent decode(Reader in, AssetDictionary dictionary) {
+        if (in.readByte() != (MAGIC & 0xFF)) {
+            throw new IllegalArgumentException("Not a binary CryptoEvent");
+        }
+        int flags = in.readByte();
+
+        String asset = null;
+        if ((flags & NULL_ASSET) == 0) {
+            int id = (int) in.readVarint();
+            asset = id != 0 ? dictionary.assetOf(id) : in.readString();
+        }
+        BigDecimal price = null;
+        if ((flags & NULL_PRICE) == 0) {
+            int scale = (int) unzigzag(in.readVarint());
+            price = BigDecimal.valueOf(unzigzag(in.readVarint()), scale);
+        }
+        long timestamp = unzigzag(in.readVarint());
+        return new CryptoEvent(asset, price, timestamp);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static final class Reader {
+
+        private final byte[] data;
+        private final int end;
+        private int position;
+
+        Reader(byte[] data, int offset, int end) {
+            this.data = data;
+            this.position = offset;
+            this.end = end;
+        }
+
+        int position() {
+            return position;
+        }
+
+        void skip(int length) {
+            if (length < 0 || position + length > end) {
+                throw new IllegalArgumentException("Truncated binary CryptoEvent");
+            }
+            position += length;
+        }
+
+        boolean hasRemaining() {
+            return position < end;
+        }
+
+        int readByte() {
+            if (position >= end) {
+                throw new IllegalArgumentException("Truncated binary CryptoEvent");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in binary CryptoEvent");
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length > MAX_LENGTH || position + length > end) {
+                throw new IllegalArgumentException("Invalid asset name length " + length);
+            }
+            String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.kinesisflow.serde;
+
+import com.kinesisflow.record.CryptoEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/*
+ * Writes CryptoEvents in the compact binary format. Events the format cannot carry are written
+ * as JSON instead, which CryptoEventDeserializer reads as well.
+ * Selected per topic through DelegatingByTopicSerializer; the asset dictionary comes from the
+ * kinesisflow.serde.asset.dictionary client property.
+ */
+public class CryptoEventBinarySerializer implements Serializer<CryptoEvent> {
+
+    private AssetDictionary dictionary;
+    private final JsonSerializer<CryptoEvent> fallback = new JsonSerializer<>();
+
+    public CryptoEventBinarySerializer() {
+        this(AssetDictionary.of(null));
+    }
+
+    public CryptoEventBinarySerializer(AssetDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.dictionary = AssetDictionary.fromConfigs(configs);
+        fallback.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, CryptoEvent event) {
+        return serialize(topic, null, event);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, CryptoEvent event) {
+        if (event == null) {
+            return null;
+        }
+        if (!CryptoEventBinaryFormat.canEncode(event)) {
+            return headers != null ? fallback.serialize(topic, headers, event) : fallback.serialize(topic, event);
+        }
+        return CryptoEventBinaryFormat.encode(event, dictionary);
+    }
+
+    @Override
+    public void close() {
+        fallback.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.kinesisflow.serde;
+
+import com.kinesisflow.record.CryptoEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/*
+ * Reads CryptoEvents in either wire format, sniffing the first byte: the binary magic byte, or
+ * anything else for JSON. Lets topics switch format without draining them, and keeps JSON
+ * records (DLQ replays, older producers) readable.
+ * JSON goes through CryptoEventJsonParser first and only reaches Jackson when the payload is
+ * outside what the parser handles; kinesisflow.serde.json.fast-path=false disables it.
+ */
+public class CryptoEventDeserializer implements Deserializer<CryptoEvent> {
+
+    public static final String FAST_PATH_CONFIG = "kinesisflow.serde.json.fast-path";
+
+    private AssetDictionary dictionary;
+    private final JsonDeserializer<CryptoEvent> json;
+    private final CryptoEventJsonParser parser = new CryptoEventJsonParser();
+    private boolean fastPath = true;
+
+    // Configured by the Kafka client: the JSON delegate reads the usual spring.json.* properties
+    public CryptoEventDeserializer() {
+        this.dictionary = AssetDictionary.of(null);
+        this.json = new JsonDeserializer<>();
+    }
+
+    public CryptoEventDeserializer(AssetDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.json = new JsonDeserializer<>(CryptoEvent.class);
+        this.json.addTrustedPackages("com.kinesisflow.record");
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.dictionary = AssetDictionary.fromConfigs(configs);
+        Object fastPathConfig = configs.get(FAST_PATH_CONFIG);
+        this.fastPath = fastPathConfig == null || Boolean.parseBoolean(fastPathConfig.toString());
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public CryptoEvent deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public CryptoEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (CryptoEventBinaryFormat.isBinary(data)) {
+            try {
+                return CryptoEventBinaryFormat.decode(data, dictionary);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Invalid binary CryptoEvent on topic " + topic, e);
+            }
+        }
+        if (fastPath) {
+            try {
+                return parser.parse(data);
+            } catch (CryptoEventJsonParser.Unsupported e) {
+                // Escapes, exponents, malformed input: Jackson decides
+            }
+        }
+        return headers != null ? json.deserialize(topic, headers, data) : json.deserialize(topic, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
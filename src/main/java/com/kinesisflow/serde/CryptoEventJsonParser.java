@@ -0,0 +1,333 @@
+package com.kinesisflow.serde;
+
+import com.kinesisflow.record.CryptoEvent;
+
+import java.math.BigDecimal;
+
+/*
+ * Hand-written parser for the JSON form of a CryptoEvent, reading straight from the record bytes.
+ * Field names are matched in place, the asset goes through the interner and the price is built
+ * from an unscaled long and a scale, so the only objects allocated are the BigDecimal and the event.
+ *
+ * It does not validate: missing, blank or non-positive values come out exactly as Jackson would
+ * produce them, so the record's constraints keep applying downstream. Anything outside the
+ * supported subset (escapes in names or assets, exponents, more than 18 digits, leading zeros,
+ * assets that are not well-formed UTF-8, malformed input) raises Unsupported and the caller falls back to Jackson, which also reports real errors.
+ */
+public final class CryptoEventJsonParser {
+
+    public static final class Unsupported extends RuntimeException {
+
+        private Unsupported() {
+            super("Input outside the fast JSON path", null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    private static final byte[] ASSET = {'a', 's', 's', 'e', 't'};
+    private static final byte[] PRICE = {'p', 'r', 'i', 'c', 'e'};
+    private static final byte[] TIMESTAMP = {'t', 'i', 'm', 'e', 's', 't', 'a', 'm', 'p'};
+    private static final int MAX_DIGITS = 18;
+
+    private final AssetInterner interner;
+
+    private byte[] data;
+    private int pos;
+
+    public CryptoEventJsonParser() {
+        this(1024);
+    }
+
+    public CryptoEventJsonParser(int maxInternedAssets) {
+        this.interner = new AssetInterner(maxInternedAssets);
+    }
+
+    public CryptoEvent parse(byte[] bytes) {
+        data = bytes;
+        pos = 0;
+        try {
+            return parseObject();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw UNSUPPORTED;
+        } finally {
+            data = null;
+        }
+    }
+
+    private CryptoEvent parseObject() {
+        String asset = null;
+        BigDecimal price = null;
+        long timestamp = 0;
+
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (data[pos] == '}') {
+            pos++;
+        } else {
+            while (true) {
+                expect('"');
+                int nameStart = pos;
+                int nameEnd = endOfPlainString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                if (matches(nameStart, nameEnd, ASSET)) {
+                    asset = readAsset();
+                } else if (matches(nameStart, nameEnd, PRICE)) {
+                    price = readPrice();
+                } else if (matches(nameStart, nameEnd, TIMESTAMP)) {
+                    timestamp = readTimestamp();
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                byte next = data[pos++];
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw UNSUPPORTED;
+                }
+                skipWhitespace();
+            }
+        }
+
+        skipWhitespace();
+        if (pos != data.length) {
+            throw UNSUPPORTED;
+        }
+        return new CryptoEvent(asset, price, timestamp);
+    }
+
+    private String readAsset() {
+        if (consumeNull()) {
+            return null;
+        }
+        expect('"');
+        int start = pos;
+        int end = endOfPlainString();
+        if (!isWellFormedUtf8(start, end)) {
+            throw UNSUPPORTED;
+        }
+        return interner.intern(data, start, end);
+    }
+
+    // Jackson accepts the price as a JSON number or a numeric string
+    private BigDecimal readPrice() {
+        if (consumeNull()) {
+            return null;
+        }
+        if (data[pos] == '"') {
+            pos++;
+            BigDecimal price = readDecimal();
+            expect('"');
+            return price;
+        }
+        return readDecimal();
+    }
+
+    private long readTimestamp() {
+        // A null primitive becomes 0, as with Jackson's defaults
+        if (consumeNull()) {
+            return 0;
+        }
+        boolean negative = data[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        rejectLeadingZero();
+        long value = 0;
+        int digits = 0;
+        while (isDigit(data[pos])) {
+            if (++digits > MAX_DIGITS) {
+                throw UNSUPPORTED;
+            }
+            value = value * 10 + (data[pos++] - '0');
+        }
+        if (digits == 0 || data[pos] == '.' || data[pos] == 'e' || data[pos] == 'E') {
+            throw UNSUPPORTED;
+        }
+        return negative ? -value : value;
+    }
+
+    private BigDecimal readDecimal() {
+        boolean negative = data[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        rejectLeadingZero();
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        while (true) {
+            byte b = data[pos];
+            if (isDigit(b)) {
+                if (++digits > MAX_DIGITS) {
+                    throw UNSUPPORTED;
+                }
+                unscaled = unscaled * 10 + (b - '0');
+                if (fraction) {
+                    scale++;
+                }
+                pos++;
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        byte b = data[pos];
+        if (digits == 0 || (fraction && scale == 0) || b == 'e' || b == 'E') {
+            throw UNSUPPORTED;
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    // JSON numbers have no leading zeros ("007"); left to Jackson, which decides whether to accept them
+    private void rejectLeadingZero() {
+        if (data[pos] == '0' && isDigit(data[pos + 1])) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /*
+     * Only well-formed UTF-8 is decoded here, where invalid bytes would silently become replacement
+     * characters. The second byte's range also excludes overlong forms, surrogates and code points
+     * above U+10FFFF.
+     */
+    private boolean isWellFormedUtf8(int start, int end) {
+        int i = start;
+        while (i < end) {
+            int b = data[i] & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int length;
+            if (b >= 0xC2 && b <= 0xDF) {
+                length = 2;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                length = 3;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                length = 4;
+            } else {
+                return false;
+            }
+            if (i + length > end) {
+                return false;
+            }
+            int second = data[i + 1] & 0xFF;
+            int low = b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80;
+            int high = b == 0xED ? 0x9F : b == 0xF4 ? 0x8F : 0xBF;
+            if (second < low || second > high) {
+                return false;
+            }
+            for (int k = 2; k < length; k++) {
+                if ((data[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += length;
+        }
+        return true;
+    }
+
+    // Leaves pos after the closing quote and returns the end of the content; escapes are not supported
+    private int endOfPlainString() {
+        while (true) {
+            byte b = data[pos];
+            if (b == '"') {
+                return pos++;
+            }
+            if (b == '\\' || (b >= 0 && b < 0x20)) {
+                throw UNSUPPORTED;
+            }
+            pos++;
+        }
+    }
+
+    private void skipValue() {
+        int depth = 0;
+        do {
+            byte b = data[pos];
+            switch (b) {
+                case '"' -> skipString();
+                case '{', '[' -> {
+                    depth++;
+                    pos++;
+                }
+                case '}', ']' -> {
+                    depth--;
+                    pos++;
+                }
+                default -> {
+                    // Number, literal, separator or whitespace inside a container
+                    if (depth == 0) {
+                        while (data[pos] != ',' && data[pos] != '}' && !isWhitespace(data[pos])) {
+                            pos++;
+                        }
+                        return;
+                    }
+                    pos++;
+                }
+            }
+        } while (depth > 0);
+    }
+
+    private void skipString() {
+        pos++;
+        while (data[pos] != '"') {
+            pos += data[pos] == '\\' ? 2 : 1;
+        }
+        pos++;
+    }
+
+    private boolean consumeNull() {
+        if (data[pos] == 'n') {
+            if (data[pos + 1] != 'u' || data[pos + 2] != 'l' || data[pos + 3] != 'l') {
+                throw UNSUPPORTED;
+            }
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matches(int start, int end, byte[] name) {
+        if (end - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (data[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(char c) {
+        if (data[pos++] != c) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < data.length && isWhitespace(data[pos])) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,176 @@
+package com.kinesisflow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.kinesisflow.exception.IngestBackPressureException;
+import com.kinesisflow.record.BatchIngestResult;
+import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.record.IngestItemStatus;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/*
+ * Streams a JSON array or NDJSON body into Kafka. Events are read one at a time, validated, and
+ * sent in chunks; the acks of a chunk are collected while the next one is read, so neither the
+ * request body nor the pending futures are ever held in full.
+ */
+@Service
+public class BatchIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchIngestService.class);
+
+    private final KafkaProducerService producerService;
+    private final ObjectReader reader;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public BatchIngestService(KafkaProducerService producerService,
+                              ObjectMapper objectMapper,
+                              Validator validator,
+                              @Value("${kinesisflow.ingest.batch.chunk-size:500}") int chunkSize) {
+        this.producerService = producerService;
+        this.reader = objectMapper.readerFor(CryptoEvent.class);
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    private record Chunk(List<Integer> indexes, List<CompletableFuture<SendResult<String, CryptoEvent>>> futures) {
+    }
+
+    // A root-level array is unwrapped by the iterator, so both body formats read the same way
+    public BatchIngestResult ingest(InputStream body) throws IOException {
+        List<IngestItemStatus> items = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>(chunkSize);
+        List<CryptoEvent> events = new ArrayList<>(chunkSize);
+        Chunk previous = null;
+        int index = 0;
+        boolean truncated = false;
+
+        try (MappingIterator<CryptoEvent> iterator = reader.readValues(body)) {
+            while (true) {
+                CryptoEvent event;
+                try {
+                    if (!iterator.hasNextValue()) {
+                        break;
+                    }
+                    event = iterator.nextValue();
+                } catch (MismatchedInputException e) {
+                    // Well-formed JSON that is not an event: the iterator skips past it to the next one
+                    items.add(new IngestItemStatus(index++, IngestItemStatus.Status.INVALID, "Invalid event: " + e.getOriginalMessage()));
+                    continue;
+                } catch (JsonProcessingException e) {
+                    // The stream cannot be resynchronised after a syntax error: stop here
+                    items.add(new IngestItemStatus(index, IngestItemStatus.Status.INVALID, "Malformed JSON: " + e.getOriginalMessage()));
+                    truncated = true;
+                    break;
+                }
+
+                String error = validate(event);
+                if (error != null) {
+                    items.add(new IngestItemStatus(index++, IngestItemStatus.Status.INVALID, error));
+                    continue;
+                }
+                indexes.add(index++);
+                events.add(event);
+
+                if (events.size() == chunkSize) {
+                    Chunk sent = new Chunk(indexes, producerService.sendBatch(events));
+                    collect(previous, items);
+                    previous = sent;
+                    indexes = new ArrayList<>(chunkSize);
+                    events = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+
+        collect(previous, items);
+        if (!events.isEmpty()) {
+            collect(new Chunk(indexes, producerService.sendBatch(events)), items);
+        }
+
+        items.sort(Comparator.comparingInt(IngestItemStatus::index));
+        BatchIngestResult result = BatchIngestResult.of(items, truncated);
+        log.debug("Batch ingested: {} received, {} accepted, {} invalid, {} rejected, {} failed, truncated: {}",
+                result.received(), result.accepted(), result.invalid(), result.rejected(), result.failed(), result.truncated());
+        return result;
+    }
+
+    /*
+     * Validates and sends a batch that is already in memory, such as a WebSocket frame.
+     * Completes, without blocking the caller, once every item has a status.
+     */
+    public CompletableFuture<List<IngestItemStatus>> ingest(List<CryptoEvent> batch) {
+        List<IngestItemStatus> items = new ArrayList<>(batch.size());
+        List<Integer> indexes = new ArrayList<>(batch.size());
+        List<CryptoEvent> events = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String error = validate(batch.get(i));
+            if (error != null) {
+                items.add(new IngestItemStatus(i, IngestItemStatus.Status.INVALID, error));
+            } else {
+                indexes.add(i);
+                events.add(batch.get(i));
+            }
+        }
+
+        Chunk chunk = new Chunk(indexes, producerService.sendBatch(events));
+        return CompletableFuture.allOf(chunk.futures().toArray(CompletableFuture[]::new))
+                .handle((ignored, failure) -> {
+                    collect(chunk, items);
+                    items.sort(Comparator.comparingInt(IngestItemStatus::index));
+                    return items;
+                });
+    }
+
+    private String validate(CryptoEvent event) {
+        if (event == null) {
+            return "Empty event";
+        }
+        Set<ConstraintViolation<CryptoEvent>> violations = validator.validate(event);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    // Waits for the acks of a chunk; the producer's delivery timeout bounds the wait
+    private void collect(Chunk chunk, List<IngestItemStatus> items) {
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.futures().size(); i++) {
+            int index = chunk.indexes().get(i);
+            try {
+                chunk.futures().get(i).join();
+                items.add(IngestItemStatus.accepted(index));
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                IngestItemStatus.Status status = cause instanceof IngestBackPressureException
+                        ? IngestItemStatus.Status.REJECTED
+                        : IngestItemStatus.Status.FAILED;
+                items.add(new IngestItemStatus(index, status, cause.getMessage()));
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.kinesisflow.service;
 
+import com.kinesisflow.engine.PartitionStateRegistry;
 import com.kinesisflow.repository.AlertRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,13 +20,19 @@ public class CleanupService {
     private final AlertRepository alertRepository;
     private final RedisTemplate<String, String> redisTemplateString;
     private final RedisTemplate<String, Double> redisTemplateDouble;
+    private final RedisSortedSetService redisSortedSetService;
+    private final PartitionStateRegistry partitionStateRegistry;
 
     public CleanupService(AlertRepository alertRepository,
                           RedisTemplate<String, String> redisTemplateString,
-                          RedisTemplate<String, Double> redisTemplateDouble) {
+                          RedisTemplate<String, Double> redisTemplateDouble,
+                          RedisSortedSetService redisSortedSetService,
+                          PartitionStateRegistry partitionStateRegistry) {
         this.alertRepository = alertRepository;
         this.redisTemplateString = redisTemplateString;
         this.redisTemplateDouble = redisTemplateDouble;
+        this.redisSortedSetService = redisSortedSetService;
+        this.partitionStateRegistry = partitionStateRegistry;
     }
 
     @Transactional
@@ -38,6 +45,10 @@ public class CleanupService {
 
         logger.info("Deleting all keys from Redis (Double template)...");
         deleteAllKeysFromTemplate(redisTemplateDouble);
+
+        logger.info("Clearing local rule index on every node...");
+        redisSortedSetService.resetLocalIndex();
+        partitionStateRegistry.invalidateAll();
     }
 
     private void deleteAllKeysFromTemplate(RedisTemplate<String, ?> redisTemplate) {
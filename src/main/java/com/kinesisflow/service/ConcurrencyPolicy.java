@@ -0,0 +1,76 @@
+package com.kinesisflow.service;
+
+import java.util.function.IntSupplier;
+
+/*
+ * Scaling decisions of ListenerConcurrencyController, one per lag sample, kept free of Kafka so
+ * they can be tested on their own.
+ *   up:    lag at or above scale-up-lag doubles the threads
+ *   down:  lag at or below scale-down-lag for scale-down-samples samples in a row removes one
+ *   cap:   never more than this node's share of the partitions (partitions / consumer nodes,
+ *          rounded up) or max-concurrency, never fewer than min-concurrency
+ * Changes are at least cooldown apart. Every node sees the same group-wide lag, so each waits a
+ * random number of extra samples (redrawn after every change) before acting: the first node to
+ * scale rebalances the group, and the others see whether the lag still calls for it.
+ * Not thread-safe; the controller calls it from the lag monitor's thread only.
+ */
+public final class ConcurrencyPolicy {
+
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final int scaleDownSamples;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long cooldownNanos;
+    private final IntSupplier jitterSamples;
+    private int highSamples;
+    private int lowSamples;
+    private int extraSamples;
+    private boolean changed;
+    private long lastChange;
+
+    public ConcurrencyPolicy(long scaleUpLag, long scaleDownLag, int scaleDownSamples, int minConcurrency,
+                             int maxConcurrency, long cooldownNanos, IntSupplier jitterSamples) {
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.scaleDownSamples = scaleDownSamples;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        this.cooldownNanos = cooldownNanos;
+        this.jitterSamples = jitterSamples;
+        this.extraSamples = jitterSamples.getAsInt();
+    }
+
+    public int maxFor(ConsumerLagMonitor.LagSample sample) {
+        int share = -Math.floorDiv(-sample.partitions(), Math.max(1, sample.consumerNodes()));
+        int max = maxConcurrency > 0 ? Math.min(maxConcurrency, share) : share;
+        return Math.max(minConcurrency, max);
+    }
+
+    // The concurrency to run with after this sample; current when nothing should change
+    public int decide(int current, ConsumerLagMonitor.LagSample sample, long nowNanos) {
+        highSamples = sample.totalLag() >= scaleUpLag ? highSamples + 1 : 0;
+        lowSamples = sample.totalLag() <= scaleDownLag ? lowSamples + 1 : 0;
+
+        int max = maxFor(sample);
+        int target = current;
+        if (current > max) {
+            // Nodes joined the group since the last change
+            target = max;
+        } else if (highSamples > extraSamples) {
+            target = Math.min(max, current * 2);
+        } else if (lowSamples >= scaleDownSamples + extraSamples) {
+            target = Math.max(minConcurrency, current - 1);
+        }
+
+        if (target == current || (changed && nowNanos - lastChange < cooldownNanos)) {
+            return current;
+        }
+        changed = true;
+        lastChange = nowNanos;
+        highSamples = 0;
+        lowSamples = 0;
+        extraSamples = jitterSamples.getAsInt();
+        return target;
+    }
+}
@@ -0,0 +1,164 @@
+package com.kinesisflow.service;
+
+import com.kinesisflow.logging.RateLimitedLogger;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/*
+ * How far kinesis-group is behind on raw-market-data, sampled through the admin client: per
+ * partition, the log end offset minus the group's committed offset. A partition the group has
+ * never committed counts as caught up, which is where a new group starts (auto.offset.reset
+ * latest). The consumption rate is the growth of the committed offsets between two samples, so
+ * both lag and rate are the whole group's, the same on every node. Consumer nodes are the distinct
+ * hosts among the group's members (every consumer thread is a member of its own).
+ * Sampling runs on its own thread: admin calls can block up to the interval when Kafka is slow.
+ */
+@Service
+public class ConsumerLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 1, Duration.ofMinutes(1));
+    private static final String TOPIC = "raw-market-data";
+    private static final String GROUP = "kinesis-group";
+
+    public record LagSample(long totalLag, int partitions, int consumerNodes, double consumptionRate) {
+    }
+
+    private final AdminClient adminClient;
+    private final MeterRegistry meterRegistry;
+    private final long intervalMs;
+    private final Map<Integer, AtomicLong> lagByPartition = new ConcurrentHashMap<>();
+    private final AtomicLong totalLag = new AtomicLong();
+    private final List<Consumer<LagSample>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("consumer-lag-monitor").daemon().factory());
+    private volatile double consumptionRate;
+    private long lastCommittedSum = -1;
+    private long lastSampleNanos;
+
+    public ConsumerLagMonitor(KafkaAdmin kafkaAdmin,
+                              MeterRegistry meterRegistry,
+                              @Value("${kinesisflow.consumer.lag.enabled:true}") boolean enabled,
+                              @Value("${kinesisflow.consumer.lag.interval-ms:5000}") long intervalMs) {
+        Map<String, Object> config = new HashMap<>(kafkaAdmin.getConfigurationProperties());
+        config.put(AdminClientConfig.CLIENT_ID_CONFIG, "kinesisflow-lag-monitor");
+        this.adminClient = enabled ? AdminClient.create(config) : null;
+        this.meterRegistry = meterRegistry;
+        this.intervalMs = intervalMs;
+
+        Gauge.builder("kinesisflow.consumer.lag.total", totalLag, AtomicLong::get)
+                .description("Records of raw-market-data not yet committed by kinesis-group, all partitions")
+                .tag("group", GROUP)
+                .register(meterRegistry);
+        Gauge.builder("kinesisflow.consumer.consumption.rate", this, monitor -> monitor.consumptionRate)
+                .description("Records of raw-market-data committed by kinesis-group per second")
+                .tag("group", GROUP)
+                .register(meterRegistry);
+
+        if (enabled) {
+            sampler.scheduleWithFixedDelay(this::sample, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Called on the sampling thread after every successful sample
+    public void addListener(Consumer<LagSample> listener) {
+        listeners.add(listener);
+    }
+
+    private void sample() {
+        try {
+            LagSample sample = readLag();
+            for (Consumer<LagSample> listener : listeners) {
+                listener.accept(sample);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            rateLimitedLog.warn("Consumer lag sample failed: {}", e.toString());
+        }
+    }
+
+    private LagSample readLag() throws InterruptedException, ExecutionException, TimeoutException {
+        TopicDescription topic = adminClient.describeTopics(List.of(TOPIC)).allTopicNames()
+                .get(intervalMs, TimeUnit.MILLISECONDS).get(TOPIC);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        topic.partitions().forEach(p -> latest.put(new TopicPartition(TOPIC, p.partition()), OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = adminClient.listOffsets(latest).all()
+                .get(intervalMs, TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(GROUP)
+                .partitionsToOffsetAndMetadata().get(intervalMs, TimeUnit.MILLISECONDS);
+        ConsumerGroupDescription group = adminClient.describeConsumerGroups(List.of(GROUP)).describedGroups().get(GROUP)
+                .get(intervalMs, TimeUnit.MILLISECONDS);
+        int consumerNodes = group.members().stream().map(MemberDescription::host).collect(Collectors.toSet()).size();
+
+        long total = 0;
+        long committedSum = 0;
+        for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> entry : endOffsets.entrySet()) {
+            long end = entry.getValue().offset();
+            OffsetAndMetadata offset = committed.get(entry.getKey());
+            long lag = offset == null ? 0 : Math.max(0, end - offset.offset());
+            partitionLag(entry.getKey().partition()).set(lag);
+            total += lag;
+            committedSum += offset == null ? end : offset.offset();
+        }
+        totalLag.set(total);
+
+        long now = System.nanoTime();
+        if (lastCommittedSum >= 0 && now > lastSampleNanos) {
+            consumptionRate = Math.max(0, committedSum - lastCommittedSum) / ((now - lastSampleNanos) / 1e9);
+        }
+        lastCommittedSum = committedSum;
+        lastSampleNanos = now;
+        return new LagSample(total, endOffsets.size(), consumerNodes, consumptionRate);
+    }
+
+    private AtomicLong partitionLag(int partition) {
+        return lagByPartition.computeIfAbsent(partition, p -> {
+            AtomicLong lag = new AtomicLong();
+            Gauge.builder("kinesisflow.consumer.lag", lag, AtomicLong::get)
+                    .description("Records of a raw-market-data partition not yet committed by kinesis-group")
+                    .tags("group", GROUP, "partition", String.valueOf(p))
+                    .register(meterRegistry);
+            return lag;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sampler.shutdownNow();
+        if (adminClient != null) {
+            adminClient.close(Duration.ofSeconds(1));
+        }
+    }
+}
@@ -95,7 +95,7 @@ public class JwtService {
                 return false;
             }
 
-            log.info("JWT validation successful for user '{}'", username);
+            log.debug("JWT validation successful for user '{}'", username);
             return true;
 
         } catch (JwtException | IllegalArgumentException e) {
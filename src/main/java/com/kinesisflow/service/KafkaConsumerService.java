@@ -1,51 +1,131 @@
 package com.kinesisflow.service;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import com.kinesisflow.engine.AlertThresholdIndex;
+import com.kinesisflow.engine.AssetMailboxDispatcher;
+import com.kinesisflow.engine.BatchPrices;
+import com.kinesisflow.engine.AlertThresholdIndex.ThresholdRange;
+import com.kinesisflow.engine.PartitionState;
+import com.kinesisflow.engine.PartitionStateRegistry;
+import com.kinesisflow.engine.PriceEnvelope;
+import com.kinesisflow.engine.PriceScale;
+import com.kinesisflow.jfr.MatchEvent;
+import com.kinesisflow.logging.RateLimitedLogger;
 import com.kinesisflow.mapper.EventToNotificationMapper;
 import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.record.NotificationBatch;
+import com.kinesisflow.record.PipelineTrace;
+import com.kinesisflow.record.PriceCrossing;
+import com.kinesisflow.websocket.NotificationShards;
+import com.kinesisflow.websocket.PresenceRegistry;
 import com.kinesisflow.websocket.RedisMessagePublisher;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class KafkaConsumerService {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaConsumerService.class);
+    // Per-event lines; the engine's volume is in the metrics, these are samples for debugging
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 20, Duration.ofSeconds(10));
 
     private final RedisStringService redisStringService;
     private final RedisSortedSetService redisSortedSetService;
     private final RedisMessagePublisher redisMessagePublisher;
+    private final AlertThresholdIndex alertThresholdIndex;
+    private final PriceScale priceScale;
+    private final PartitionStateRegistry partitionStateRegistry;
+    private final AssetMailboxDispatcher mailboxDispatcher;
+    private final NotificationShards notificationShards;
+    private final PresenceRegistry presenceRegistry;
+    private final NotificationInboxService notificationInboxService;
+    private final PipelineLatencyService pipelineLatencyService;
+    private final boolean localIndexEnabled;
+    private final boolean mailboxEnabled;
     private final Timer processingTimer;
+    private final Timer batchProcessingTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final DistributionSummary crossedUsersSummary;
     private final Counter usersNotifiedCounter;
+    private final Counter usersInboxedCounter;
 
 
     public KafkaConsumerService(RedisStringService redisStringService,
                                 RedisSortedSetService redisSortedSetService, RedisMessagePublisher redisMessagePublisher,
+                                AlertThresholdIndex alertThresholdIndex,
+                                PriceScale priceScale,
+                                PartitionStateRegistry partitionStateRegistry,
+                                AssetMailboxDispatcher mailboxDispatcher,
+                                NotificationShards notificationShards,
+                                PresenceRegistry presenceRegistry,
+                                NotificationInboxService notificationInboxService,
+                                PipelineLatencyService pipelineLatencyService,
+                                @Value("${kinesisflow.engine.local-index.enabled:true}") boolean localIndexEnabled,
+                                @Value("${kinesisflow.consumer.mailbox.enabled:false}") boolean mailboxEnabled,
                                 MeterRegistry meterRegistry
     )  {
         this.redisStringService = redisStringService;
         this.redisSortedSetService = redisSortedSetService;
         this.redisMessagePublisher = redisMessagePublisher;
+        this.alertThresholdIndex = alertThresholdIndex;
+        this.priceScale = priceScale;
+        this.partitionStateRegistry = partitionStateRegistry;
+        this.mailboxDispatcher = mailboxDispatcher;
+        this.notificationShards = notificationShards;
+        this.presenceRegistry = presenceRegistry;
+        this.notificationInboxService = notificationInboxService;
+        this.pipelineLatencyService = pipelineLatencyService;
+        this.localIndexEnabled = localIndexEnabled;
+        this.mailboxEnabled = mailboxEnabled;
         this.processingTimer = Timer.builder("kinesisflow.consumer.processing.duration")
                 .description("Time taken to process a single market event")
                 .publishPercentiles(0.95, 0.99)
                 .register(meterRegistry);
 
+        this.batchProcessingTimer = Timer.builder("kinesisflow.consumer.batch.duration")
+                .description("Time taken to process a whole poll in batch mode")
+                .publishPercentiles(0.95, 0.99)
+                .register(meterRegistry);
+
+        this.batchSizeSummary = DistributionSummary.builder("kinesisflow.consumer.batch.size")
+                .description("Number of market events received per poll in batch mode")
+                .register(meterRegistry);
+
+        this.crossedUsersSummary = DistributionSummary.builder("kinesisflow.engine.crossed.users")
+                .description("Users whose alert a single tick crossed")
+                .register(meterRegistry);
+
         this.usersNotifiedCounter = Counter.builder("kinesisflow.notifications.sent.total")
                 .description("Total number of user notifications sent")
                 .register(meterRegistry);
+
+        this.usersInboxedCounter = Counter.builder("kinesisflow.notifications.inboxed.total")
+                .description("Total number of notifications stored for offline users")
+                .register(meterRegistry);
     }
 
     @Transactional
@@ -53,117 +133,370 @@ public class KafkaConsumerService {
             id = "kinesis-listener",
             topics = "raw-market-data",
             groupId = "kinesis-group",
-            concurrency = "1",
-            containerFactory = "kafkaListenerContainerFactory"
+            concurrency = "${kinesisflow.consumer.concurrency:1}",
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{'${kinesisflow.consumer.mode:record}' == 'record'}"
     )
 
-    public void listen(CryptoEvent cryptoEvent) {
-        log.info("Message received: {}", cryptoEvent);
+    public void listen(ConsumerRecord<String, CryptoEvent> record, Acknowledgment acknowledgment) {
+        CryptoEvent cryptoEvent = record.value();
+        rateLimitedLog.debug("Message received: {}", cryptoEvent);
+        PipelineTrace trace = pipelineLatencyService.consumed(record);
 
+        PartitionState state = partitionStateRegistry.stateFor(record.topic(), record.partition());
+        if (mailboxEnabled) {
+            mailboxDispatcher.dispatch(record, cryptoEvent.asset(), acknowledgment,
+                    () -> processingTimer.record(() -> processCryptoEvent(cryptoEvent, trace, state)));
+            return;
+        }
+
+        processingTimer.record(() -> processCryptoEvent(cryptoEvent, trace, state));
+        acknowledgment.acknowledge();
+    }
+
+    @KafkaListener(
+            id = "kinesis-batch-listener",
+            topics = "raw-market-data",
+            groupId = "kinesis-group",
+            concurrency = "${kinesisflow.consumer.concurrency:1}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${kinesisflow.consumer.mode:record}' == 'batch'}"
+    )
+    public void listenBatch(List<ConsumerRecord<String, CryptoEvent>> records) {
+        log.debug("Batch received: {} records", records.size());
+        batchSizeSummary.record(records.size());
 
-        processingTimer.record(() -> {
-            log.info("Processing event: {}", cryptoEvent);
-            processCryptoEvent(cryptoEvent);
+        int invalidIndex = findFirstInvalidRecord(records);
+        List<ConsumerRecord<String, CryptoEvent>> valid = invalidIndex < 0 ? records : records.subList(0, invalidIndex);
+
+        batchProcessingTimer.record(() -> processBatch(valid));
+
+        if (invalidIndex >= 0) {
+            throw new BatchListenerFailedException("Invalid market event at index " + invalidIndex, invalidIndex);
+        }
+    }
+
+    private int findFirstInvalidRecord(List<ConsumerRecord<String, CryptoEvent>> records) {
+        for (int i = 0; i < records.size(); i++) {
+            CryptoEvent event = records.get(i).value();
+            if (event == null || event.asset() == null || event.asset().isBlank()
+                    || event.price() == null || event.price().signum() <= 0) {
+                log.warn("Invalid market event in batch at offset {}: {}", records.get(i).offset(), event);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void processBatch(List<ConsumerRecord<String, CryptoEvent>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // Group ticks by asset, keeping per-asset order and the first record index of each group
+        Map<String, List<CryptoEvent>> ticksByAsset = new LinkedHashMap<>();
+        Map<String, List<PipelineTrace>> tracesByAsset = new LinkedHashMap<>();
+        Map<String, Integer> firstIndexByAsset = new LinkedHashMap<>();
+        Map<String, PartitionState> stateByAsset = new LinkedHashMap<>();
+        BatchPrices batchPrices = new BatchPrices();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, CryptoEvent> record = records.get(i);
+            CryptoEvent event = record.value();
+            ticksByAsset.computeIfAbsent(event.asset(), a -> new ArrayList<>()).add(event);
+            tracesByAsset.computeIfAbsent(event.asset(), a -> new ArrayList<>()).add(pipelineLatencyService.consumed(record));
+            if (firstIndexByAsset.putIfAbsent(event.asset(), i) == null) {
+                stateByAsset.put(event.asset(), partitionStateRegistry.stateFor(record.topic(), record.partition()));
+            }
+            batchPrices.add(event.asset(), i, priceScale.toUnits(event.asset(), event.price()));
+        }
+
+        // The owning partition's last price wins; Redis only seeds assets not seen since assignment
+        List<String> uncached = new ArrayList<>();
+        for (String asset : batchPrices.assets()) {
+            Long cached = stateByAsset.get(asset).lastPrice(asset);
+            if (cached != null) {
+                batchPrices.previous(asset, cached);
+            } else {
+                uncached.add(asset);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            Map<String, Long> stored;
+            try {
+                stored = redisStringService.getAll(uncached);
+            } catch (RuntimeException e) {
+                throw new BatchListenerFailedException("Price read from Redis failed", e, 0);
+            }
+            uncached.forEach(asset -> batchPrices.previous(asset, stored.get(asset)));
+        }
+
+        for (Map.Entry<String, List<CryptoEvent>> entry : ticksByAsset.entrySet()) {
+            String asset = entry.getKey();
+            PartitionState state = stateByAsset.get(asset);
+            try {
+                processAssetTicks(asset, entry.getValue(), tracesByAsset.get(asset), batchPrices.previous(asset), state);
+            } catch (RuntimeException e) {
+                int failedIndex = firstIndexByAsset.get(asset);
+                checkpointPrices(batchPrices.pricesBefore(failedIndex), stateByAsset);
+                throw new BatchListenerFailedException("Processing failed for asset " + asset, e, failedIndex);
+            }
+            // Only once its ticks are processed does an asset move to its final price
+            state.lastPrice(asset, batchPrices.last(asset));
+        }
+
+        storePrices(batchPrices.lastPrices());
+    }
+
+    /*
+     * Records from the failed index on are redelivered: every asset goes back to its price after
+     * the last record before it, in the partition state and in Redis. Assets that had no price
+     * before the batch were never written to Redis and are only forgotten locally.
+     */
+    private void checkpointPrices(Map<String, Long> prices, Map<String, PartitionState> stateByAsset) {
+        Map<String, Long> known = new HashMap<>();
+        prices.forEach((asset, price) -> {
+            if (price != null) {
+                stateByAsset.get(asset).lastPrice(asset, price);
+                known.put(asset, price);
+            } else {
+                stateByAsset.get(asset).forget(asset);
+            }
         });
+        storePrices(known);
+    }
 
+    // Redis only seeds a partition's next owner; the partition state stays authoritative here
+    private void storePrices(Map<String, Long> prices) {
+        if (prices.isEmpty()) {
+            return;
+        }
+        try {
+            redisStringService.saveAll(prices);
+        } catch (RuntimeException e) {
+            log.warn("Could not store {} asset prices in Redis: {}", prices.size(), e.getMessage());
+        }
     }
 
-    private void processCryptoEvent(CryptoEvent cryptoEvent) {
-        Optional<BigDecimal> formerPrice = getPreviousPrice(cryptoEvent.asset());
+    /*
+     * Coalesced sweep: resolve every threshold the asset's path can cross with one range lookup
+     * per direction over the envelope, then replay the ticks against those candidates locally.
+     * Each tick still yields exactly the users the per-tick path would notify for it.
+     */
+    private void processAssetTicks(String asset, List<CryptoEvent> ticks, List<PipelineTrace> traces,
+                                   Long previousPrice, PartitionState state) {
+        MatchEvent matchEvent = new MatchEvent();
+        matchEvent.begin();
+        long[] prices = new long[ticks.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = priceScale.toUnits(asset, ticks.get(i).price());
+        }
 
-        if (formerPrice.isEmpty()) {
-            savePriceAndReturn(cryptoEvent);
+        PriceEnvelope envelope = PriceEnvelope.of(previousPrice, prices);
+        if (!envelope.hasMovement()) {
             return;
         }
 
-        Set<String> affectedUsers = getAffectedUsers(cryptoEvent, formerPrice.get());
+        PartitionState.RuleKeys ruleKeys = state.ruleKeys(asset, redisSortedSetService::createRuleIndexKey);
+        ThresholdRange gtCandidates = getCandidates(ruleKeys.greaterThan(), envelope);
+        ThresholdRange ltCandidates = getCandidates(ruleKeys.lessThan(), envelope);
+        if (gtCandidates.isEmpty() && ltCandidates.isEmpty()) {
+            commitMatch(matchEvent, asset, ticks.size(), 0, 0);
+            return;
+        }
 
-        if (!affectedUsers.isEmpty()) {
-            log.info("Found {} affected users for asset {} price change from {} to {}",
-                    affectedUsers.size(), cryptoEvent.asset(), formerPrice.get(), cryptoEvent.price());
+        int matched = 0;
+        Long formerPrice = previousPrice;
+        for (int i = 0; i < prices.length; i++) {
+            long price = prices[i];
+            if (formerPrice != null) {
+                Set<String> affectedUsers = switch (comparePrices(price, formerPrice)) {
+                    case HIGHER -> gtCandidates.usersInRange(formerPrice, price, true, false);
+                    case LOWER -> ltCandidates.usersInRange(price, formerPrice, true, false);
+                    case EQUAL -> Collections.emptySet();
+                };
+                if (!affectedUsers.isEmpty()) {
+                    matched += affectedUsers.size();
+                    processAffectedUsers(affectedUsers, ticks.get(i), traces.get(i));
+                }
+            }
+            formerPrice = price;
+        }
+        commitMatch(matchEvent, asset, ticks.size(), gtCandidates.size() + ltCandidates.size(), matched);
+    }
+
+    private ThresholdRange getCandidates(String key, PriceEnvelope envelope) {
+        if (localIndexEnabled) {
+            return alertThresholdIndex.range(key, envelope.min(), envelope.max(), true, false);
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisSortedSetService.getRangeWithScoresByUnits(
+                key, envelope.min(), envelope.max(), true, false
+        );
+        if (tuples == null || tuples.isEmpty()) {
+            return ThresholdRange.of(new String[0], new long[0]);
+        }
 
-            processAffectedUsers(affectedUsers, cryptoEvent);
+        String[] members = new String[tuples.size()];
+        long[] scores = new long[tuples.size()];
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (tuple.getScore() == null) {
+                continue;
+            }
+            members[i] = tuple.getValue();
+            scores[i] = tuple.getScore().longValue();
+            i++;
         }
+        return ThresholdRange.of(Arrays.copyOf(members, i), Arrays.copyOf(scores, i));
+    }
 
-        updateCurrentPrice(cryptoEvent);
+    private void processCryptoEvent(CryptoEvent cryptoEvent, PipelineTrace trace, PartitionState state) {
+        MatchEvent matchEvent = new MatchEvent();
+        matchEvent.begin();
+        // Converted once; everything downstream compares exact fixed-point units
+        long price = priceScale.toUnits(cryptoEvent.asset(), cryptoEvent.price());
+        Optional<Long> formerPrice;
+        Set<String> affectedUsers;
+        int candidates;
+
+        if (localIndexEnabled) {
+            formerPrice = swapPrice(cryptoEvent.asset(), price, state);
+            if (formerPrice.isEmpty()) {
+                log.debug("Saved initial price for asset: {}", cryptoEvent.asset());
+                return;
+            }
+            ThresholdRange crossed = getCrossedRange(state.ruleKeys(cryptoEvent.asset(), redisSortedSetService::createRuleIndexKey),
+                    price, formerPrice.get());
+            affectedUsers = crossed.users();
+            candidates = crossed.size();
+        } else {
+            PriceCrossing crossing = redisSortedSetService.swapPriceAndMatch(cryptoEvent.asset(), price);
+            if (!crossing.hasPreviousPrice()) {
+                log.debug("Saved initial price for asset: {}", cryptoEvent.asset());
+                return;
+            }
+            formerPrice = Optional.of(crossing.previousPrice());
+            affectedUsers = extractUserIds(crossing.members());
+            candidates = crossing.members().size();
+        }
+        // Before publishing: in record mode the event times the match alone
+        commitMatch(matchEvent, cryptoEvent.asset(), 1, candidates, affectedUsers.size());
+
+        if (!affectedUsers.isEmpty()) {
+            rateLimitedLog.debug("Found {} affected users for asset {} price change from {} to {}",
+                    affectedUsers.size(), cryptoEvent.asset(),
+                    priceScale.toPrice(cryptoEvent.asset(), formerPrice.get()), cryptoEvent.price());
+
+            try {
+                processAffectedUsers(affectedUsers, cryptoEvent, trace);
+            } catch (RuntimeException e) {
+                restorePreviousPrice(cryptoEvent.asset(), formerPrice.get(), state);
+                throw e;
+            }
+        }
     }
 
-    private Optional<BigDecimal> getPreviousPrice(String asset) {
-        Double price = redisStringService.get(asset);
-        return price != null ? Optional.of(BigDecimal.valueOf(price)) : Optional.empty();
+    /*
+     * The partition owner already knows the last price of its assets and only writes through.
+     * The first tick after assignment seeds it with a single GETSET, so the read and the write
+     * cannot interleave with the previous owner's last write.
+     */
+    private Optional<Long> swapPrice(String asset, long price, PartitionState state) {
+        Long cached = state.lastPrice(asset);
+        Long previous;
+        if (cached != null) {
+            redisStringService.save(asset, price);
+            previous = cached;
+        } else {
+            previous = redisStringService.getAndSet(asset, price);
+        }
+        state.lastPrice(asset, price);
+        return Optional.ofNullable(previous);
     }
 
-    private void savePriceAndReturn(CryptoEvent cryptoEvent) {
-        redisStringService.save(cryptoEvent.asset(), cryptoEvent.price());
-        log.debug("Saved initial price for asset: {}", cryptoEvent.asset());
+    // The price was swapped before publishing; put it back so the retried record crosses again
+    private void restorePreviousPrice(String asset, long formerPrice, PartitionState state) {
+        state.lastPrice(asset, formerPrice);
+        try {
+            redisStringService.save(asset, formerPrice);
+        } catch (RuntimeException e) {
+            log.error("Could not restore previous price {} for asset {}: {}", formerPrice, asset, e.getMessage());
+        }
     }
 
-    private Set<String> getAffectedUsers(CryptoEvent cryptoEvent, BigDecimal formerPrice) {
-        PriceComparison comparison = comparePrices(cryptoEvent.price(), formerPrice);
+    private ThresholdRange getCrossedRange(PartitionState.RuleKeys ruleKeys, long currentPrice, long formerPrice) {
+        PriceComparison comparison = comparePrices(currentPrice, formerPrice);
 
         return switch (comparison) {
-            case HIGHER -> getUsersForPriceIncrease(cryptoEvent.asset(), formerPrice, cryptoEvent.price());
-            case LOWER -> getUsersForPriceDecrease(cryptoEvent.asset(), cryptoEvent.price(), formerPrice);
-            case EQUAL -> Collections.emptySet();
+            case HIGHER -> getRangeForPriceIncrease(ruleKeys.greaterThan(), formerPrice, currentPrice);
+            case LOWER -> getRangeForPriceDecrease(ruleKeys.lessThan(), currentPrice, formerPrice);
+            case EQUAL -> ThresholdRange.EMPTY;
         };
     }
 
-    private PriceComparison comparePrices(BigDecimal currentPrice, BigDecimal formerPrice) {
-        int comparison = currentPrice.compareTo(formerPrice);
+    private PriceComparison comparePrices(long currentPrice, long formerPrice) {
+        int comparison = Long.compare(currentPrice, formerPrice);
         if (comparison > 0) return PriceComparison.HIGHER;
         if (comparison < 0) return PriceComparison.LOWER;
         return PriceComparison.EQUAL;
     }
 
-    private Set<String> getUsersForPriceIncrease(String asset, BigDecimal formerPrice, BigDecimal currentPrice) {
-        String gtKey = redisSortedSetService.createRuleIndexKey(asset, "1");
-        Set<String> values = redisSortedSetService.getRangeByScore(
-                gtKey, formerPrice, currentPrice, true, false
-        );
-        return extractUserIds(values);
+    private ThresholdRange getRangeForPriceIncrease(String gtKey, long formerPrice, long currentPrice) {
+        return alertThresholdIndex.range(gtKey, formerPrice, currentPrice, true, false);
     }
 
-    private Set<String> getUsersForPriceDecrease(String asset, BigDecimal currentPrice, BigDecimal formerPrice) {
-        String ltKey = redisSortedSetService.createRuleIndexKey(asset, "-1");
-        Set<String> values = redisSortedSetService.getRangeByScore(
-                ltKey, currentPrice, formerPrice, true, false
-        );
-        return extractUserIds(values);
+    private ThresholdRange getRangeForPriceDecrease(String ltKey, long currentPrice, long formerPrice) {
+        return alertThresholdIndex.range(ltKey, currentPrice, formerPrice, true, false);
     }
 
-    private Set<String> extractUserIds(Set<String> values) {
-        return values.stream()
-                .map(this::extractUserId)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toSet());
+    private static void commitMatch(MatchEvent event, String asset, int batchSize, int candidates, int usersMatched) {
+        if (event.shouldCommit()) {
+            event.asset = asset;
+            event.batchSize = batchSize;
+            event.candidates = candidates;
+            event.usersMatched = usersMatched;
+            event.commit();
+        }
     }
 
-
-    private Optional<String> extractUserId(String value) {
-        if (value == null || !value.contains(":")) {
-            log.warn("Invalid value format: {}", value);
-            return Optional.empty();
+    // indexOf per member rather than split, which allocates an array and every part; set sized once
+    private Set<String> extractUserIds(Collection<String> values) {
+        Set<String> users = new HashSet<>((int) (values.size() / 0.75f) + 1);
+        for (String value : values) {
+            String userId = AlertThresholdIndex.userIdOf(value);
+            if (userId == null) {
+                rateLimitedLog.warn("Invalid value format: {}", value);
+                continue;
+            }
+            users.add(userId);
         }
-        return Optional.of(value.split(":")[0]);
+        return users;
     }
 
-    private void processAffectedUsers(Set<String> users, CryptoEvent cryptoEvent) {
+    private void processAffectedUsers(Set<String> users, CryptoEvent cryptoEvent, PipelineTrace trace) {
+        crossedUsersSummary.record(users.size());
 
-        users.forEach(u -> redisMessagePublisher.publish("alerts", EventToNotificationMapper.mapToNotification(cryptoEvent, u)));
+        // Offline users are not fanned out; their notifications wait in the inbox until reconnect
+        Set<String> online = presenceRegistry.onlineUsers(users);
+        if (online.size() < users.size()) {
+            List<String> offline = users.stream().filter(u -> !online.contains(u)).toList();
+            notificationInboxService.storeAll(EventToNotificationMapper.mapToNotificationBatch(cryptoEvent, offline), offline);
+            usersInboxedCounter.increment(offline.size());
+        }
 
-        log.info("Processing {} affected users for asset {}", users.size(), cryptoEvent.asset());
+        if (!online.isEmpty()) {
+            // One batch per user shard, pipelined; only nodes holding users of a shard receive it
+            PipelineTrace published = pipelineLatencyService.published(trace);
+            Map<String, NotificationBatch> batches = new LinkedHashMap<>();
+            notificationShards.groupByChannel(online).forEach((channel, shardUsers) ->
+                    batches.put(channel, EventToNotificationMapper.mapToNotificationBatch(cryptoEvent, shardUsers).withTrace(published)));
+            redisMessagePublisher.publishAll(batches);
+        }
 
-        usersNotifiedCounter.increment(users.size());
+        usersNotifiedCounter.increment(online.size());
     }
 
 
-
-    private void updateCurrentPrice(CryptoEvent cryptoEvent) {
-        redisStringService.save(cryptoEvent.asset(), cryptoEvent.price());
-        log.debug("Updated current price for asset: {}", cryptoEvent.asset());
-    }
-
     private enum PriceComparison {
         HIGHER, LOWER, EQUAL
     }
@@ -1,35 +1,88 @@
 package com.kinesisflow.service;
+import com.kinesisflow.exception.IngestBackPressureException;
+import com.kinesisflow.logging.RateLimitedLogger;
 import com.kinesisflow.record.CryptoEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 
+/*
+ * Every send to raw-market-data goes through one in-flight semaphore: at most max-in-flight
+ * events wait for their acks at any time. Callers block for a free slot up to the acquire
+ * timeout and then fail with IngestBackPressureException, instead of piling futures up behind
+ * a full producer buffer. Send-to-ack latency is recorded as a histogram per outcome.
+ * Each record carries the time it was handed over, slot wait included, for PipelineLatencyService.
+ */
 @Service
 public class KafkaProducerService {
 
+    private static final String TOPIC = "raw-market-data";
+
     private final KafkaTemplate<String, CryptoEvent> kafkaTemplate;
+    private final PipelineLatencyService pipelineLatencyService;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long acquireTimeoutNanos;
+    private final Timer sendLatency;
+    private final Timer failedSendLatency;
     private static final Logger log = LoggerFactory.getLogger(KafkaProducerService.class);
+    // Failures come in bursts when the broker is down; the failure timer counts every one of them
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 10, Duration.ofSeconds(10));
 
 
-    public KafkaProducerService(KafkaTemplate<String, CryptoEvent> kafkaTemplate) {
+    public KafkaProducerService(@Qualifier("marketDataKafkaTemplate") KafkaTemplate<String, CryptoEvent> kafkaTemplate,
+                                @Value("${kinesisflow.producer.max-in-flight:10000}") int maxInFlight,
+                                @Value("${kinesisflow.producer.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+                                PipelineLatencyService pipelineLatencyService,
+                                MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.pipelineLatencyService = pipelineLatencyService;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        Gauge.builder("kinesisflow.producer.in-flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Events sent to raw-market-data and not yet acknowledged")
+                .register(meterRegistry);
+        this.sendLatency = sendLatencyTimer(meterRegistry, "success");
+        this.failedSendLatency = sendLatencyTimer(meterRegistry, "failure");
     }
 
+    private static Timer sendLatencyTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("kinesisflow.producer.send.latency")
+                .description("Time from send to broker acknowledgement on raw-market-data")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-    public void send(CryptoEvent event) {
 
-        String topic =  "raw-market-data";
+    public void send(CryptoEvent event) {
+        long ingestedAt = System.currentTimeMillis();
 
-        CompletableFuture<SendResult<String, CryptoEvent>> future = kafkaTemplate.send(topic, event.asset(), event);
+        if (!acquire(System.nanoTime() + acquireTimeoutNanos)) {
+            throw new IngestBackPressureException("Producer saturated: " + maxInFlight + " events in flight");
+        }
 
-        future.whenComplete((result, ex) -> {
+        send(event, ingestedAt, System.nanoTime()).whenComplete((result, ex) -> {
             if (ex != null) {
-                log.error("Asynchronous failure while sending message: {}", ex.getMessage());
+                rateLimitedLog.error("Asynchronous failure while sending message: {}", ex.getMessage());
             } else {
                 log.trace("Asynchronous success. Offset: {}", result.getRecordMetadata().offset());
             }
@@ -37,4 +90,51 @@ public class KafkaProducerService {
 
 
     }
+
+    /*
+     * Sends a batch asynchronously, one future per event in the same order. Events that get no
+     * slot before the batch deadline fail with IngestBackPressureException.
+     */
+    public List<CompletableFuture<SendResult<String, CryptoEvent>>> sendBatch(List<CryptoEvent> events) {
+        List<CompletableFuture<SendResult<String, CryptoEvent>>> futures = new ArrayList<>(events.size());
+        long ingestedAt = System.currentTimeMillis();
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+
+        for (CryptoEvent event : events) {
+            if (!acquire(deadline)) {
+                futures.add(CompletableFuture.failedFuture(
+                        new IngestBackPressureException("Producer saturated: " + maxInFlight + " events in flight")));
+                continue;
+            }
+            futures.add(send(event, ingestedAt, System.nanoTime()));
+        }
+        return futures;
+    }
+
+    // The caller holds a slot; it is released when the send completes either way
+    private CompletableFuture<SendResult<String, CryptoEvent>> send(CryptoEvent event, long ingestedAt, long startedAt) {
+        CompletableFuture<SendResult<String, CryptoEvent>> future;
+        try {
+            future = kafkaTemplate.send(new ProducerRecord<>(TOPIC, null, event.asset(), event,
+                    pipelineLatencyService.ingestHeaders(ingestedAt)));
+        } catch (RuntimeException e) {
+            // Buffer still full after max.block.ms, or the producer is closed
+            inFlight.release();
+            failedSendLatency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, ex) -> {
+            inFlight.release();
+            (ex == null ? sendLatency : failedSendLatency).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private boolean acquire(long deadline) {
+        try {
+            return inFlight.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package com.kinesisflow.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Optional lag-driven concurrency for the market data listener of this node; the decisions are
+ * ConcurrencyPolicy's (scale up on high lag, down after a run of low samples, capped at this
+ * node's share of the partitions, cooldown and per-node jitter between changes).
+ * A container only picks up a new concurrency on start, so a change stops it (revoking its
+ * partitions through PartitionStateRegistry, mailboxes drained) and starts it again; the group
+ * rebalances once. Decisions run on the lag monitor's thread, which waits for the restart.
+ */
+@Service
+public class ListenerConcurrencyController {
+
+    private static final Logger log = LoggerFactory.getLogger(ListenerConcurrencyController.class);
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final String listenerId;
+    private final ConcurrencyPolicy policy;
+
+    public ListenerConcurrencyController(ConsumerLagMonitor lagMonitor,
+                                         KafkaListenerEndpointRegistry listenerRegistry,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${kinesisflow.consumer.autoscale.enabled:false}") boolean enabled,
+                                         @Value("${kinesisflow.consumer.mode:record}") String mode,
+                                         @Value("${kinesisflow.consumer.autoscale.scale-up-lag:10000}") long scaleUpLag,
+                                         @Value("${kinesisflow.consumer.autoscale.scale-down-lag:1000}") long scaleDownLag,
+                                         @Value("${kinesisflow.consumer.autoscale.scale-down-samples:6}") int scaleDownSamples,
+                                         @Value("${kinesisflow.consumer.autoscale.min-concurrency:${kinesisflow.consumer.concurrency:1}}") int minConcurrency,
+                                         @Value("${kinesisflow.consumer.autoscale.max-concurrency:0}") int maxConcurrency,
+                                         @Value("${kinesisflow.consumer.autoscale.cooldown-ms:60000}") long cooldownMs,
+                                         @Value("${kinesisflow.consumer.autoscale.jitter-samples:3}") int jitterSamples) {
+        this.listenerRegistry = listenerRegistry;
+        this.listenerId = "batch".equals(mode) ? "kinesis-batch-listener" : "kinesis-listener";
+        this.policy = new ConcurrencyPolicy(scaleUpLag, scaleDownLag, scaleDownSamples, minConcurrency, maxConcurrency,
+                TimeUnit.MILLISECONDS.toNanos(cooldownMs),
+                () -> ThreadLocalRandom.current().nextInt(Math.max(0, jitterSamples) + 1));
+
+        // Read from the container, so it is right before the first sample and with control disabled
+        Gauge.builder("kinesisflow.consumer.concurrency", this, ListenerConcurrencyController::currentConcurrency)
+                .description("Consumer threads of the market data listener on this node")
+                .register(meterRegistry);
+
+        if (enabled) {
+            lagMonitor.addListener(this::onSample);
+            log.info("Listener concurrency control enabled for {}: up at lag {}, down at lag {}",
+                    listenerId, scaleUpLag, scaleDownLag);
+        }
+    }
+
+    private int currentConcurrency() {
+        MessageListenerContainer listener = listenerRegistry.getListenerContainer(listenerId);
+        if (listener instanceof ConcurrentMessageListenerContainer<?, ?> container && container.isRunning()) {
+            return container.getConcurrency();
+        }
+        return 0;
+    }
+
+    private void onSample(ConsumerLagMonitor.LagSample sample) {
+        MessageListenerContainer listener = listenerRegistry.getListenerContainer(listenerId);
+        if (!(listener instanceof ConcurrentMessageListenerContainer<?, ?> container) || !container.isRunning()) {
+            return;
+        }
+
+        int current = container.getConcurrency();
+        int target = policy.decide(current, sample, System.nanoTime());
+        if (target == current) {
+            return;
+        }
+
+        log.info("Listener {} concurrency {} -> {}: lag {}, {} partitions over {} nodes, consuming {} records/s",
+                listenerId, current, target, sample.totalLag(), sample.partitions(), sample.consumerNodes(),
+                Math.round(sample.consumptionRate()));
+        container.stop();
+        container.setConcurrency(target);
+        container.start();
+    }
+}
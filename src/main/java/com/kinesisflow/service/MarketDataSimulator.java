@@ -1,55 +1,305 @@
 package com.kinesisflow.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.engine.PriceScale;
+import com.kinesisflow.exception.IngestBackPressureException;
+import com.kinesisflow.logging.RateLimitedLogger;
 import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.record.NotificationBatch;
+import com.kinesisflow.websocket.NotificationShards;
+import com.kinesisflow.websocket.PresenceRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/*
+ * Market data generator for development and load tests (profiles dev and loadgen).
+ * Sends ticks for a configurable number of assets at a target rate from one pacing thread.
+ * Prices follow a geometric Brownian motion whose volatility switches between a calm and a
+ * stressed regime, so alerts keep getting crossed in bursts the way real markets cross them.
+ *
+ * Optionally seeds synthetic alerts around the starting prices, straight into the Redis rule
+ * index (no database rows) and removed again on stop, for synthetic users marked online. Their
+ * notification batches are read back from the pub/sub shards and timed against the tick
+ * timestamp: the end-to-end latency of this node's pipeline, without an external load tool.
+ */
 @Service
-@Profile("dev") // Only run in dev mode
+@Profile({"dev", "loadgen"})
 public class MarketDataSimulator {
 
     private static final Logger log = LoggerFactory.getLogger(MarketDataSimulator.class);
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 10, Duration.ofSeconds(10));
+    private static final String SYNTHETIC_USER_PREFIX = "loadgen-user-";
+    private static final String[] NAMED_ASSETS = {"BTC", "ETH", "SOL", "ADA", "DOT"};
+    private static final double[] NAMED_PRICES = {45000.00, 3200.00, 110.00, 1.20, 15.00};
+
     private final KafkaProducerService producerService;
-    private final Random random = new Random();
+    private final RedisSortedSetService redisSortedSetService;
+    private final PresenceRegistry presenceRegistry;
+    private final NotificationShards notificationShards;
+    private final RedisMessageListenerContainer redisContainer;
+    private final PriceScale priceScale;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SplittableRandom random = new SplittableRandom();
+
+    private final List<SimulatedAsset> assets = new ArrayList<>();
+    private final double eventsPerSecond;
+    private final double calmVolatility;
+    private final double stressedVolatility;
+    private final double stressProbability;
+    private final double calmProbability;
+    private final int alertsPerAsset;
+    private final int syntheticUsers;
+    private final double alertBand;
 
-    // Initial prices
-    private final Map<String, BigDecimal> prices = new HashMap<>();
+    private final Counter sentCounter;
+    private final Counter rejectedCounter;
+    private final Timer endToEndLatency;
+    private final MessageListener latencyListener = (message, pattern) -> recordLatency(message.getBody());
+    private final List<ChannelTopic> latencyTopics = new ArrayList<>();
+    // Rule index members seeded by this run, removed again on stop
+    private final Map<String, Set<String>> seededMembers = new HashMap<>();
+    private volatile boolean running;
+    private Thread pacer;
 
-    public MarketDataSimulator(KafkaProducerService producerService) {
+    public MarketDataSimulator(KafkaProducerService producerService,
+                               RedisSortedSetService redisSortedSetService,
+                               PresenceRegistry presenceRegistry,
+                               NotificationShards notificationShards,
+                               RedisMessageListenerContainer redisContainer,
+                               PriceScale priceScale,
+                               MeterRegistry meterRegistry,
+                               @Value("${kinesisflow.simulator.assets:5}") int assetCount,
+                               @Value("${kinesisflow.simulator.events-per-second:25}") double eventsPerSecond,
+                               @Value("${kinesisflow.simulator.volatility.calm:0.0013}") double calmVolatility,
+                               @Value("${kinesisflow.simulator.volatility.stressed:0.01}") double stressedVolatility,
+                               @Value("${kinesisflow.simulator.regime.stress-probability:0.02}") double stressProbability,
+                               @Value("${kinesisflow.simulator.regime.calm-probability:0.1}") double calmProbability,
+                               @Value("${kinesisflow.simulator.alerts.per-asset:0}") int alertsPerAsset,
+                               @Value("${kinesisflow.simulator.alerts.users:100}") int syntheticUsers,
+                               @Value("${kinesisflow.simulator.alerts.band:0.02}") double alertBand) {
         this.producerService = producerService;
-        prices.put("BTC", new BigDecimal("45000.00"));
-        prices.put("ETH", new BigDecimal("3200.00"));
-        prices.put("SOL", new BigDecimal("110.00"));
-        prices.put("ADA", new BigDecimal("1.20"));
-        prices.put("DOT", new BigDecimal("15.00"));
+        this.redisSortedSetService = redisSortedSetService;
+        this.presenceRegistry = presenceRegistry;
+        this.notificationShards = notificationShards;
+        this.redisContainer = redisContainer;
+        this.priceScale = priceScale;
+        this.eventsPerSecond = eventsPerSecond;
+        this.calmVolatility = calmVolatility;
+        this.stressedVolatility = stressedVolatility;
+        this.stressProbability = stressProbability;
+        this.calmProbability = calmProbability;
+        this.alertsPerAsset = alertsPerAsset;
+        this.syntheticUsers = Math.max(1, syntheticUsers);
+        this.alertBand = alertBand;
+
+        for (int i = 0; i < assetCount; i++) {
+            assets.add(i < NAMED_ASSETS.length
+                    ? new SimulatedAsset(NAMED_ASSETS[i], NAMED_PRICES[i])
+                    : new SimulatedAsset("SYN" + i, 100.0));
+        }
+
+        this.sentCounter = Counter.builder("kinesisflow.simulator.events.sent")
+                .description("Ticks sent by the market data simulator")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("kinesisflow.simulator.events.rejected")
+                .description("Ticks the producer rejected because too many sends were in flight")
+                .register(meterRegistry);
+        this.endToEndLatency = Timer.builder("kinesisflow.simulator.e2e.latency")
+                .description("Tick timestamp to notification batch received from pub/sub, synthetic alerts only")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (alertsPerAsset > 0) {
+            seedAlerts();
+        }
+        running = true;
+        pacer = Thread.ofPlatform().name("market-data-simulator").daemon().start(this::run);
+        log.info("Market data simulator started: {} assets, {} events/s", assets.size(), eventsPerSecond);
+    }
+
+    /*
+     * One tick per interval, round robin over the assets. Falling behind (GC pause, blocked
+     * producer) is caught up in a burst, but never more than one second of backlog.
+     */
+    private void run() {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+        // Simulated time between two ticks of the same asset
+        double dt = assets.size() / eventsPerSecond;
+        long next = System.nanoTime();
+        int index = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(Math.min(next - now, TimeUnit.MILLISECONDS.toNanos(1)));
+                continue;
+            }
+            if (now - next > TimeUnit.SECONDS.toNanos(1)) {
+                next = now;
+            }
+
+            SimulatedAsset asset = assets.get(index);
+            index = (index + 1) % assets.size();
+            send(asset, asset.step(dt));
+            next += intervalNanos;
+        }
+    }
+
+    private void send(SimulatedAsset asset, double price) {
+        BigDecimal value = toPrice(asset.symbol, price);
+        CryptoEvent event = new CryptoEvent(asset.symbol, value, Instant.now().toEpochMilli());
+        try {
+            producerService.send(event);
+            sentCounter.increment();
+        } catch (IngestBackPressureException e) {
+            rejectedCounter.increment();
+        } catch (RuntimeException e) {
+            rateLimitedLog.warn("Simulated event for {} not sent: {}", asset.symbol, e.getMessage());
+        }
     }
 
-    @Scheduled(fixedRate = 200) // 5 events per second per asset
-    public void simulateMarketData() {
-        prices.forEach((symbol, price) -> updateAndSend(symbol, price));
+    private BigDecimal toPrice(String symbol, double price) {
+        long units = Math.max(1, Math.round(price * Math.pow(10, priceScale.scaleOf(symbol))));
+        return priceScale.toPrice(symbol, units);
     }
 
-    private void updateAndSend(String symbol, BigDecimal currentPrice) {
-        // Random fluctuation between -0.1% and +0.1% to prevent runaway values
-        double changePercent = (random.nextDouble() - 0.5) * 0.002;
-        BigDecimal change = currentPrice.multiply(BigDecimal.valueOf(changePercent));
-        BigDecimal newPrice = currentPrice.add(change).setScale(2, RoundingMode.HALF_UP);
+    /*
+     * Thresholds uniformly within +-band of the starting price, alternating above (GT) and below
+     * (LT) alerts over the synthetic users, which are marked online so their batches are published.
+     */
+    private void seedAlerts() {
+        for (int u = 0; u < syntheticUsers; u++) {
+            presenceRegistry.markOnline(SYNTHETIC_USER_PREFIX + u);
+        }
+
+        int total = 0;
+        for (SimulatedAsset asset : assets) {
+            Map<String, BigDecimal> above = new HashMap<>();
+            Map<String, BigDecimal> below = new HashMap<>();
+            for (int i = 0; i < alertsPerAsset; i++) {
+                String user = SYNTHETIC_USER_PREFIX + (i % syntheticUsers);
+                BigDecimal threshold = toPrice(asset.symbol, asset.price * (1 + alertBand * (2 * random.nextDouble() - 1)));
+                String member = redisSortedSetService.createRuleIndexValue(user, threshold);
+                (i % 2 == 0 ? above : below).put(member, threshold);
+            }
+            seed(redisSortedSetService.createRuleIndexKey(asset.symbol, "1"), above);
+            seed(redisSortedSetService.createRuleIndexKey(asset.symbol, "-1"), below);
+            total += above.size() + below.size();
+        }
+
+        Map<String, ChannelTopic> channels = new LinkedHashMap<>();
+        for (int u = 0; u < syntheticUsers; u++) {
+            String channel = notificationShards.channelOfUser(SYNTHETIC_USER_PREFIX + u);
+            channels.putIfAbsent(channel, new ChannelTopic(channel));
+        }
+        latencyTopics.addAll(channels.values());
+        redisContainer.addMessageListener(latencyListener, latencyTopics);
+
+        log.info("Seeded {} synthetic alerts for {} users on {} shard channels", total, syntheticUsers, latencyTopics.size());
+    }
+
+    private void seed(String key, Map<String, BigDecimal> members) {
+        // Leftovers of a run that never reached stop() (killed, crashed)
+        Set<String> existing = redisSortedSetService.getAllElements(key);
+        if (existing != null) {
+            Set<String> stale = new HashSet<>();
+            for (String member : existing) {
+                if (member.startsWith(SYNTHETIC_USER_PREFIX)) {
+                    stale.add(member);
+                }
+            }
+            redisSortedSetService.removeElements(key, stale);
+        }
+        redisSortedSetService.addElements(key, members);
+        seededMembers.put(key, members.keySet());
+    }
+
+    // Other users share the shard channels; only batches that include a synthetic user count
+    private void recordLatency(byte[] body) {
+        try {
+            NotificationBatch batch = objectMapper.readValue(body, NotificationBatch.class);
+            if (batch.users() == null || batch.users().stream().noneMatch(user -> user.startsWith(SYNTHETIC_USER_PREFIX))) {
+                return;
+            }
+            long latencyMs = System.currentTimeMillis() - batch.timestamp();
+            endToEndLatency.record(Math.max(0, latencyMs), TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            log.debug("Unreadable notification on a latency channel: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (pacer != null) {
+            pacer.join(TimeUnit.SECONDS.toMillis(1));
+        }
+        if (!latencyTopics.isEmpty()) {
+            redisContainer.removeMessageListener(latencyListener);
+            for (int u = 0; u < syntheticUsers; u++) {
+                presenceRegistry.markOffline(SYNTHETIC_USER_PREFIX + u);
+            }
+        }
+        try {
+            seededMembers.forEach(redisSortedSetService::removeElements);
+            seededMembers.clear();
+        } catch (RuntimeException e) {
+            log.warn("Synthetic alerts not removed, the next run replaces them: {}", e.getMessage());
+        }
+    }
+
+    /*
+     * GBM step: S' = S * exp(-sigma^2 / 2 * dt + sigma * sqrt(dt) * Z), no drift.
+     * Regime switches are a per-second probability scaled to the step.
+     */
+    private final class SimulatedAsset {
+
+        private final String symbol;
+        private double price;
+        private boolean stressed;
 
-        // Update state
-        prices.put(symbol, newPrice);
+        SimulatedAsset(String symbol, double price) {
+            this.symbol = symbol;
+            this.price = price;
+        }
 
-        CryptoEvent event = new CryptoEvent(symbol, newPrice, Instant.now().toEpochMilli());
-        producerService.send(event);
-        log.debug("Simulated event: {} - {}", symbol, newPrice);
+        double step(double dt) {
+            if (random.nextDouble() < (stressed ? calmProbability : stressProbability) * dt) {
+                stressed = !stressed;
+            }
+            double sigma = stressed ? stressedVolatility : calmVolatility;
+            price *= Math.exp(-0.5 * sigma * sigma * dt + sigma * Math.sqrt(dt) * random.nextGaussian());
+            return price;
+        }
     }
 }
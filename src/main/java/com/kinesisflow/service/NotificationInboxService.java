@@ -0,0 +1,81 @@
+package com.kinesisflow.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.record.NotificationBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Bounded per-user inbox for notifications of users that are offline. Newest entries are pushed
+ * to the head and the list is trimmed to the newest maxSize; the whole inbox expires if the user
+ * does not come back within the TTL.
+ */
+@Service
+public class NotificationInboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationInboxService.class);
+
+    private static final String INBOX_PREFIX = "inbox:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int maxSize;
+    private final long ttlSeconds;
+
+    public NotificationInboxService(StringRedisTemplate redisTemplate,
+                                    @Value("${kinesisflow.inbox.max-size:100}") int maxSize,
+                                    @Value("${kinesisflow.inbox.ttl-seconds:604800}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.maxSize = maxSize;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public void store(String userId, String payload) {
+        storeAll(Map.of(userId, payload));
+    }
+
+    public void storeAll(NotificationBatch batch, Collection<String> users) {
+        Map<String, String> payloads = new LinkedHashMap<>();
+        try {
+            for (String user : users) {
+                payloads.put(user, objectMapper.writeValueAsString(batch.forUser(user)));
+            }
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to serialize object to JSON", e);
+        }
+        storeAll(payloads);
+    }
+
+    // LPUSH + LTRIM + EXPIRE per user, all in one pipeline
+    private void storeAll(Map<String, String> payloadsByUser) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            payloadsByUser.forEach((user, payload) -> {
+                String key = INBOX_PREFIX + user;
+                stringConnection.lPush(key, payload);
+                stringConnection.lTrim(key, 0, maxSize - 1);
+                stringConnection.expire(key, ttlSeconds);
+            });
+            return null;
+        });
+        log.debug("Stored notifications in the inbox of {} offline users", payloadsByUser.size());
+    }
+
+    // Pops oldest first; RPOP with a count is atomic, so entries pushed meanwhile are not lost
+    public List<String> drain(String userId) {
+        List<String> payloads = redisTemplate.opsForList().rightPop(INBOX_PREFIX + userId, maxSize);
+        return payloads != null ? payloads : List.of();
+    }
+}
@@ -0,0 +1,110 @@
+package com.kinesisflow.service;
+
+import com.kinesisflow.record.PipelineTrace;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tick-to-socket latency, stage by stage. The producer stamps the ingest time into a Kafka
+ * header; the engine adds the broker append time (when the topic uses LogAppendTime) and its own
+ * pickup time, and the publish time travels in the pub/sub envelope to the node that writes the
+ * notification to the socket. Each stage is recorded where its end is known:
+ * ingest-to-broker and broker-to-consume when the engine picks the record up, match (pickup to
+ * publish, mailbox queueing included) when the batch is published, publish-to-deliver and the
+ * total once session.sendMessage has returned.
+ */
+@Service
+public class PipelineLatencyService {
+
+    public static final String INGESTED_AT_HEADER = "kinesisflow-ingested-at";
+
+    private final boolean enabled;
+    private final Timer ingestToBroker;
+    private final Timer brokerToConsume;
+    private final Timer match;
+    private final Timer publishToDeliver;
+    private final Timer total;
+
+    public PipelineLatencyService(@Value("${kinesisflow.pipeline.tracing.enabled:true}") boolean enabled,
+                                  MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ingestToBroker = stageTimer(meterRegistry, "ingest-to-broker", "Tick handed to the producer to appended by the broker");
+        this.brokerToConsume = stageTimer(meterRegistry, "broker-to-consume", "Tick appended by the broker to picked up by the engine");
+        this.match = stageTimer(meterRegistry, "match", "Tick picked up by the engine to its notification batches published");
+        this.publishToDeliver = stageTimer(meterRegistry, "publish-to-deliver", "Notification batch published to written to a user's socket");
+        this.total = Timer.builder("kinesisflow.pipeline.latency")
+                .description("Tick handed to the producer to notification written to a user's socket")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage, String description) {
+        return Timer.builder("kinesisflow.pipeline.stage.latency")
+                .description(description)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Headers of a tick handed to the producer at ingestedAt; null when tracing is disabled
+    public Headers ingestHeaders(long ingestedAt) {
+        if (!enabled) {
+            return null;
+        }
+        Headers headers = new RecordHeaders();
+        headers.add(INGESTED_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(ingestedAt).array());
+        return headers;
+    }
+
+    // Null for records sent without the header (other producers, tracing disabled)
+    public PipelineTrace consumed(ConsumerRecord<?, ?> record) {
+        if (!enabled) {
+            return null;
+        }
+        Header header = record.headers().lastHeader(INGESTED_AT_HEADER);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return null;
+        }
+
+        long ingestedAt = ByteBuffer.wrap(header.value()).getLong();
+        long appendedAt = record.timestampType() == TimestampType.LOG_APPEND_TIME ? record.timestamp() : 0;
+        long now = System.currentTimeMillis();
+        if (appendedAt > 0) {
+            record(ingestToBroker, appendedAt - ingestedAt);
+            record(brokerToConsume, now - appendedAt);
+        }
+        return new PipelineTrace(ingestedAt, appendedAt, now, 0);
+    }
+
+    public PipelineTrace published(PipelineTrace trace) {
+        if (trace == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        record(match, now - trace.consumedAt());
+        return trace.published(now);
+    }
+
+    public void delivered(PipelineTrace trace) {
+        long now = System.currentTimeMillis();
+        if (trace.publishedAt() > 0) {
+            record(publishToDeliver, now - trace.publishedAt());
+        }
+        record(total, now - trace.ingestedAt());
+    }
+
+    // Clocks of different nodes can disagree by a few ms; a negative stage is recorded as 0
+    private static void record(Timer timer, long millis) {
+        timer.record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+}
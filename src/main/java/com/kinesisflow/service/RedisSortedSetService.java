@@ -1,23 +1,87 @@
 package com.kinesisflow.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.engine.AlertThresholdIndex;
+import com.kinesisflow.engine.PartitionStateRegistry;
+import com.kinesisflow.engine.PriceScale;
 import com.kinesisflow.model.User;
+import com.kinesisflow.logging.RateLimitedLogger;
+import com.kinesisflow.record.PriceCrossing;
+import com.kinesisflow.record.RuleIndexChange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/*
+ * Redis holds the rule index shared by every node; each node keeps a local copy in the
+ * AlertThresholdIndex. Every add or remove goes through rule-index-update.lua, which bumps the
+ * key's version and publishes the change on RULE_INDEX_CHANNEL in the same atomic step. Nodes apply
+ * the change with the next version of a key and reload only that key when they see a gap, so
+ * changes made through other nodes show up as soon as they are published. The whole index is
+ * reloaded from Redis only at startup and whenever the channel is (re)subscribed, which covers
+ * changes published while this node was disconnected.
+ */
 @Service
-public class RedisSortedSetService {
+public class RedisSortedSetService implements SmartInitializingSingleton, MessageListener, SubscriptionListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisSortedSetService.class);
+    private static final RateLimitedLogger rateLimitedLogger = RateLimitedLogger.of(logger, 10, Duration.ofSeconds(10));
+
+    public static final String RULE_INDEX_CHANNEL = "rule-index:changes";
+    static final String RULE_INDEX_VERSIONS_KEY = "rule-index:versions";
+
+    private static final String[] RULE_INDEX_TYPES = {"1", "-1", "0"};
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> PRICE_CROSSING_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/price-crossing.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RULE_INDEX_UPDATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rule-index-update.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RULE_INDEX_READ_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rule-index-read.lua"), List.class);
+    private static final RedisScript<Long> RULE_INDEX_RESCORE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rule-index-rescore.lua"), Long.class);
 
     private final RedisTemplate<String, String> redisTemplateString;
+    private final AlertThresholdIndex alertThresholdIndex;
+    private final PriceScale priceScale;
+    private final PartitionStateRegistry partitionStateRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Version of each key the local index is at
+    private final Map<String, Long> indexVersions = new ConcurrentHashMap<>();
 
-    public RedisSortedSetService(RedisTemplate<String, String> redisTemplateString) {
+    public RedisSortedSetService(RedisTemplate<String, String> redisTemplateString,
+                                 AlertThresholdIndex alertThresholdIndex,
+                                 PriceScale priceScale,
+                                 PartitionStateRegistry partitionStateRegistry) {
         this.redisTemplateString = redisTemplateString;
+        this.alertThresholdIndex = alertThresholdIndex;
+        this.priceScale = priceScale;
+        this.partitionStateRegistry = partitionStateRegistry;
     }
 
     public String createRuleIndexKey(String asset, String type) {
@@ -25,40 +89,332 @@ public class RedisSortedSetService {
     }
 
     public String createRuleIndexValue(User user, BigDecimal price) {
-        return String.join(":", user.getUsername(), price.stripTrailingZeros().toPlainString());
+        return createRuleIndexValue(user.getUsername(), price);
+    }
+
+    public String createRuleIndexValue(String username, BigDecimal price) {
+        return String.join(":", username, price.stripTrailingZeros().toPlainString());
     }
 
+    private String assetOf(String key) {
+        return key.substring(0, key.lastIndexOf(':'));
+    }
+
+    // Scores are fixed-point units of the asset's scale; callers keep working with prices
     public void addElement(String key, String value, BigDecimal score) {
-        Boolean result = redisTemplateString.opsForZSet().add(key, value, score.doubleValue());
-        if (Boolean.FALSE.equals(result)) {
+        long units = priceScale.toUnits(assetOf(key), score);
+        long added = update(key, "add", List.of(String.valueOf(units), value));
+        if (added == 0) {
             logger.warn("Failed to add element to Redis ZSet: key={}, value={}, score={}", key, value, score);
         } else {
             logger.debug("Added element to Redis ZSet: key={}, value={}, score={}", key, value, score);
         }
     }
 
+    // Bulk load of one key (synthetic alerts for load tests): a single ZADD for every member
+    public void addElements(String key, Map<String, BigDecimal> members) {
+        if (members.isEmpty()) {
+            return;
+        }
+        String asset = assetOf(key);
+        List<String> args = new ArrayList<>(members.size() * 2);
+        for (Map.Entry<String, BigDecimal> entry : members.entrySet()) {
+            args.add(String.valueOf(priceScale.toUnits(asset, entry.getValue())));
+            args.add(entry.getKey());
+        }
+        update(key, "add", args);
+        logger.debug("Added {} elements to Redis ZSet: key={}", members.size(), key);
+    }
+
+    // Bulk removal of one key: a single change for every member
+    public void removeElements(String key, Set<String> members) {
+        if (members.isEmpty()) {
+            return;
+        }
+        long removed = update(key, "remove", List.copyOf(members));
+        logger.debug("Removed {} elements from Redis ZSet: key={}", removed, key);
+    }
+
     public void removeElement(String key, String value) {
-        Long removed = redisTemplateString.opsForZSet().remove(key, value);
-        if (removed != null && removed == 0) {
+        long removed = update(key, "remove", List.of(value));
+        if (removed == 0) {
             logger.warn("Element not found for removal: key={}, value={}", key, value);
         } else {
             logger.debug("Removed element from Redis ZSet: key={}, value={}", key, value);
         }
     }
 
+    // Writes and publishes the change, then applies it here without waiting for our own message
+    @SuppressWarnings("unchecked")
+    private long update(String key, String op, List<String> args) {
+        Object[] argv = new Object[args.size() + 2];
+        argv[0] = RULE_INDEX_CHANNEL;
+        argv[1] = op;
+        for (int i = 0; i < args.size(); i++) {
+            argv[i + 2] = args.get(i);
+        }
+        List<Long> result = redisTemplateString.execute(RULE_INDEX_UPDATE_SCRIPT, List.of(key, RULE_INDEX_VERSIONS_KEY), argv);
+        apply(new RuleIndexChange(key, result.get(0), op, args));
+        return result.get(1);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RuleIndexChange change;
+        try {
+            change = objectMapper.readValue(message.getBody(), RuleIndexChange.class);
+        } catch (IOException e) {
+            rateLimitedLogger.error("Unreadable rule index change: {}", e.getMessage());
+            return;
+        }
+        if (change.key() == null) {
+            reloadLocalIndexInBackground();
+        } else {
+            apply(change);
+        }
+    }
+
+    // Subscribed at startup and again after every reconnect: changes may have been missed meanwhile
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        reloadLocalIndexInBackground();
+    }
+
+    /*
+     * Applies a change only on top of the version before it. Older changes are already part of the
+     * local state; a newer one means some were missed (or arrive out of order), and the key is
+     * reloaded, after which the late ones are ignored.
+     */
+    private void apply(RuleIndexChange change) {
+        String key = change.key();
+        Long version = indexVersions.compute(key, (k, applied) -> {
+            long current = applied == null ? 0 : applied;
+            if (change.version() != current + 1) {
+                return applied;
+            }
+            List<String> args = change.args();
+            if ("add".equals(change.op())) {
+                String[] members = new String[args.size() / 2];
+                long[] scores = new long[members.length];
+                for (int i = 0; i < members.length; i++) {
+                    scores[i] = Long.parseLong(args.get(2 * i));
+                    members[i] = args.get(2 * i + 1);
+                }
+                alertThresholdIndex.addAll(key, members, scores);
+            } else {
+                alertThresholdIndex.removeAll(key, new HashSet<>(args));
+            }
+            return change.version();
+        });
+
+        if (version == null || version < change.version()) {
+            logger.debug("Missed rule index changes before version {} of {}, reloading it", change.version(), key);
+            reloadKey(key);
+        }
+    }
+
     public Set<String> getRangeByScore(String key, BigDecimal minScore, BigDecimal maxScore, boolean minInclusive, boolean maxInclusive) {
-        double adjustedMin = minInclusive ? minScore.doubleValue() : Math.nextUp(minScore.doubleValue());
-        double adjustedMax = maxInclusive ? maxScore.doubleValue() : Math.nextDown(maxScore.doubleValue());
+        String asset = assetOf(key);
+        long min = priceScale.toUnits(asset, minScore);
+        long max = priceScale.toUnits(asset, maxScore);
+
+        // Integer scores: exclusive bounds are exact neighbours, no floating point adjustment needed
+        long adjustedMin = minInclusive ? min : min + 1;
+        long adjustedMax = maxInclusive ? max : max - 1;
 
         return redisTemplateString.opsForZSet().rangeByScore(key, adjustedMin, adjustedMax);
     }
 
+    public Set<ZSetOperations.TypedTuple<String>> getRangeWithScoresByUnits(String key, long min, long max, boolean minInclusive, boolean maxInclusive) {
+        long adjustedMin = minInclusive ? min : min + 1;
+        long adjustedMax = maxInclusive ? max : max - 1;
+
+        return redisTemplateString.opsForZSet().rangeByScoreWithScores(key, adjustedMin, adjustedMax);
+    }
+
+    /*
+     * Swaps the last price of the asset and returns the crossed rule index members in a single
+     * atomic EVALSHA, so concurrent consumers of the same asset cannot interleave read and write.
+     * The script is loaded at startup; RedisTemplate falls back to EVAL if Redis lost it.
+     */
+    @SuppressWarnings("unchecked")
+    public PriceCrossing swapPriceAndMatch(String asset, long units) {
+        List<String> keys = List.of(asset, createRuleIndexKey(asset, "1"), createRuleIndexKey(asset, "-1"));
+        List<String> result = redisTemplateString.execute(PRICE_CROSSING_SCRIPT, keys,
+                priceScale.encode(units), String.valueOf(priceScale.scaleOf(asset)));
+
+        if (result == null || result.isEmpty() || result.get(0).isEmpty()) {
+            return new PriceCrossing(null, List.of());
+        }
+        return new PriceCrossing(priceScale.decode(asset, result.get(0)), result.subList(1, result.size()));
+    }
+
+    private void loadScripts() {
+        String sha = redisTemplateString.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(PRICE_CROSSING_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+
+        if (!PRICE_CROSSING_SCRIPT.getSha1().equals(sha)) {
+            logger.warn("Price crossing script SHA mismatch: expected {}, Redis returned {}", PRICE_CROSSING_SCRIPT.getSha1(), sha);
+        } else {
+            logger.info("Price crossing script loaded with SHA {}", sha);
+        }
+    }
+
     public Set<String> getAllElements(String key) {
         return redisTemplateString.opsForZSet().range(key, 0, -1);
     }
 
     public Double getScore(String key, String value) {
-        return redisTemplateString.opsForZSet().score(key, value);
+        Double units = redisTemplateString.opsForZSet().score(key, value);
+        return units != null ? priceScale.toPrice(assetOf(key), units.longValue()).doubleValue() : null;
+    }
+
+    public Set<ZSetOperations.TypedTuple<String>> getAllElementsWithScores(String key) {
+        return redisTemplateString.opsForZSet().rangeWithScores(key, 0, -1);
+    }
+
+    public Set<String> getRuleIndexKeys() {
+        Set<String> keys = new HashSet<>();
+        for (String type : RULE_INDEX_TYPES) {
+            ScanOptions options = ScanOptions.scanOptions().match(createRuleIndexKey("*", type)).count(1000).build();
+            try (var cursor = redisTemplateString.scan(options)) {
+                cursor.forEachRemaining(keys::add);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            loadScripts();
+        } catch (Exception e) {
+            logger.error("Loading Lua scripts into Redis failed, they will be sent with EVAL on first use", e);
+        }
+        try {
+            migrateScores();
+        } catch (Exception e) {
+            logger.error("Re-scoring rule index members to fixed-point units failed, retried on next startup", e);
+        }
+        try {
+            reloadLocalIndex();
+        } catch (Exception e) {
+            logger.error("Initial rule index load from Redis failed, reloading once the change channel is subscribed", e);
+        }
+    }
+
+    private void reloadLocalIndexInBackground() {
+        Thread.ofVirtual().name("rule-index-reload").start(() -> {
+            try {
+                reloadLocalIndex();
+            } catch (RuntimeException e) {
+                logger.error("Rule index reload from Redis failed", e);
+            }
+        });
+    }
+
+    /*
+     * Reloads every key in Redis, plus the local ones Redis no longer has. Versions are forgotten
+     * first so each snapshot is taken as it is, even if Redis was reset behind a reconnect; a change
+     * applied meanwhile only makes that key's snapshot stale, and it is then not installed.
+     */
+    public void reloadLocalIndex() {
+        Set<String> keys = getRuleIndexKeys();
+        keys.addAll(alertThresholdIndex.keys());
+        indexVersions.clear();
+
+        int elements = 0;
+        for (String key : keys) {
+            elements += reloadKey(key);
+        }
+        logger.debug("Local rule index reloaded from Redis: {} keys, {} elements", keys.size(), elements);
+    }
+
+    /*
+     * One-off migration at startup: members whose score is not yet in fixed-point units (written
+     * before that encoding) are re-scored in place, and only if they still exist.
+     */
+    private void migrateScores() {
+        int rescored = 0;
+        for (String key : getRuleIndexKeys()) {
+            Set<ZSetOperations.TypedTuple<String>> tuples = getAllElementsWithScores(key);
+            if (tuples == null) {
+                continue;
+            }
+
+            String asset = assetOf(key);
+            List<String> args = new ArrayList<>();
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                Long units = thresholdOf(asset, tuple.getValue());
+                if (units != null && (tuple.getScore() == null || tuple.getScore() != priceScale.toScore(units))) {
+                    args.add(String.valueOf(units));
+                    args.add(tuple.getValue());
+                }
+            }
+            if (!args.isEmpty()) {
+                Long count = redisTemplateString.execute(RULE_INDEX_RESCORE_SCRIPT, List.of(key), args.toArray());
+                rescored += count != null ? count.intValue() : 0;
+            }
+        }
+        if (rescored > 0) {
+            logger.info("Re-scored {} rule index members to fixed-point units", rescored);
+        }
+    }
+
+    // Threshold in fixed-point units, taken from the member ("user:price"); null if unreadable
+    private Long thresholdOf(String asset, String member) {
+        if (member == null || member.lastIndexOf(':') < 0) {
+            return null;
+        }
+        try {
+            return priceScale.toUnits(asset, new BigDecimal(member.substring(member.lastIndexOf(':') + 1)));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int reloadKey(String key) {
+        List<String> entries = redisTemplateString.execute(RULE_INDEX_READ_SCRIPT, List.of(key, RULE_INDEX_VERSIONS_KEY));
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        long snapshotVersion = Long.parseLong(entries.get(0));
+        String asset = assetOf(key);
+        String[] members = new String[(entries.size() - 1) / 2];
+        long[] thresholds = new long[members.length];
+        int i = 0;
+        for (int e = 1; e + 1 < entries.size(); e += 2) {
+            String member = entries.get(e);
+            Long units = thresholdOf(asset, member);
+            if (units == null) {
+                logger.warn("Skipping rule index member with unreadable price: key={}, member={}", key, member);
+                continue;
+            }
+
+            members[i] = member;
+            thresholds[i] = units;
+            i++;
+        }
+
+        String[] loadedMembers = Arrays.copyOf(members, i);
+        long[] loadedThresholds = Arrays.copyOf(thresholds, i);
+        indexVersions.compute(key, (k, applied) -> {
+            if (applied != null && applied > snapshotVersion) {
+                return applied;
+            }
+            alertThresholdIndex.replace(key, loadedMembers, loadedThresholds);
+            return snapshotVersion;
+        });
+        return i;
+    }
+
+    // After rule index keys were deleted wholesale: every node, this one included, reloads from Redis
+    public void resetLocalIndex() {
+        alertThresholdIndex.clear();
+        indexVersions.clear();
+        redisTemplateString.convertAndSend(RULE_INDEX_CHANNEL, "{\"op\":\"reset\"}");
     }
 
     public Set<String> getAllKeys() {
@@ -73,5 +429,7 @@ public class RedisSortedSetService {
         } else {
             logger.info("No Redis keys to delete");
         }
+        resetLocalIndex();
+        partitionStateRegistry.invalidateAll();
     }
 }
@@ -1,29 +1,65 @@
 package com.kinesisflow.service;
+
+import com.kinesisflow.engine.PriceScale;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/*
+ * Last traded price per asset, stored as fixed-point units (see PriceScale).
+ */
 @Service
 public class RedisStringService {
 
-    private final RedisTemplate<String, Double> redisTemplateDouble;
+    private final RedisTemplate<String, String> redisTemplateString;
+    private final PriceScale priceScale;
+
+    public RedisStringService(RedisTemplate<String, String> redisTemplateString, PriceScale priceScale) {
+        this.redisTemplateString = redisTemplateString;
+        this.priceScale = priceScale;
+    }
+
+    public void save(String key, long units) {
+        redisTemplateString.opsForValue().set(key, priceScale.encode(units));
+    }
+
+    public Long get(String key) {
+        return decode(key, redisTemplateString.opsForValue().get(key));
+    }
+
+    public Long getAndSet(String key, long units) {
+        return decode(key, redisTemplateString.opsForValue().getAndSet(key, priceScale.encode(units)));
+    }
 
-    public RedisStringService(RedisTemplate<String, Double> redisTemplateDouble) {
-        this.redisTemplateDouble = redisTemplateDouble;
+    // One MGET for every key; keys that do not exist map to null
+    public Map<String, Long> getAll(List<String> keys) {
+        List<String> values = redisTemplateString.opsForValue().multiGet(keys);
+
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), decode(keys.get(i), values != null ? values.get(i) : null));
+        }
+        return result;
     }
 
-    public void save(String key, BigDecimal value) {
-        redisTemplateDouble.opsForValue().set(key, value.doubleValue());
+    // One MSET for every key
+    public void saveAll(Map<String, Long> values) {
+        Map<String, String> encoded = new HashMap<>();
+        values.forEach((key, units) -> encoded.put(key, priceScale.encode(units)));
+        redisTemplateString.opsForValue().multiSet(encoded);
     }
 
-    public Double get(String key) {
-        return redisTemplateDouble.opsForValue().get(key);
+    private Long decode(String key, String value) {
+        return value != null ? priceScale.decode(key, value) : null;
     }
+
     public void deleteAll() {
-        var keys = redisTemplateDouble.keys("*");
+        var keys = redisTemplateString.keys("*");
         if (keys != null && !keys.isEmpty()) {
-            redisTemplateDouble.delete(keys);
+            redisTemplateString.delete(keys);
         }
     }
 
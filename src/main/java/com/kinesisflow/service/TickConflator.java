@@ -0,0 +1,176 @@
+package com.kinesisflow.service;
+
+import com.kinesisflow.engine.ConflatedPath;
+import com.kinesisflow.exception.IngestBackPressureException;
+import com.kinesisflow.logging.RateLimitedLogger;
+import com.kinesisflow.record.CryptoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Optional conflation stage in front of KafkaProducerService.send. Ticks of an asset arriving
+ * within window-ms of the first one are reduced to a ConflatedPath, which preserves every alert
+ * crossing, and sent together when the window closes or the path reaches max-points.
+ * Drained paths are handed to a single sender thread, in order, so a slow producer never holds a
+ * window's lock. At most max-pending accepted ticks wait in windows or the hand-off; beyond that
+ * submit rejects with IngestBackPressureException and /ingest answers 503, and a saturated
+ * producer is retried rather than dropping ticks the caller was told were accepted.
+ * Disabled, every tick is sent as it arrives.
+ */
+@Service
+public class TickConflator {
+
+    private static final Logger log = LoggerFactory.getLogger(TickConflator.class);
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 10, Duration.ofSeconds(10));
+
+    private final KafkaProducerService producerService;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxPoints;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tick-conflator").daemon().factory());
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("tick-conflator-sender").daemon().factory());
+    private final Counter ticksIn;
+    private final Counter ticksOut;
+
+    public TickConflator(KafkaProducerService producerService,
+                         @Value("${kinesisflow.ingest.conflation.enabled:false}") boolean enabled,
+                         @Value("${kinesisflow.ingest.conflation.window-ms:5}") long windowMs,
+                         @Value("${kinesisflow.ingest.conflation.max-points:8}") int maxPoints,
+                         @Value("${kinesisflow.ingest.conflation.max-pending:10000}") int maxPending,
+                         MeterRegistry meterRegistry) {
+        this.producerService = producerService;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxPoints = maxPoints;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+
+        this.ticksIn = Counter.builder("kinesisflow.ingest.conflation.ticks.in")
+                .description("Ticks offered to the conflation stage")
+                .register(meterRegistry);
+        this.ticksOut = Counter.builder("kinesisflow.ingest.conflation.ticks.out")
+                .description("Ticks sent to Kafka by the conflation stage")
+                .register(meterRegistry);
+    }
+
+    public void submit(CryptoEvent event) {
+        ticksIn.increment();
+        // Events without a price cannot be ordered; they are sent as is for validation downstream
+        if (!enabled || event.asset() == null || event.price() == null) {
+            // Back-pressure reaches the caller directly
+            producerService.send(event);
+            ticksOut.increment();
+            return;
+        }
+        if (!pending.tryAcquire()) {
+            throw new IngestBackPressureException("Conflation saturated: " + maxPending + " ticks pending");
+        }
+        windows.computeIfAbsent(event.asset(), asset -> new Window()).add(event);
+    }
+
+    // Sender thread only: each tick's pending slot is released once it has been handled
+    private void send(List<CryptoEvent> events) {
+        for (CryptoEvent event : events) {
+            try {
+                sendAccepted(event);
+            } catch (RuntimeException e) {
+                rateLimitedLog.error("Conflated tick of {} not sent: {}", event.asset(), e.getMessage());
+            } finally {
+                pending.release();
+            }
+        }
+        ticksOut.increment(events.size());
+    }
+
+    /*
+     * The caller was already answered, so a saturated producer is waited for instead of dropping
+     * the tick; the pending slots it holds meanwhile push back on new submits. Only on shutdown
+     * does a saturated send give up.
+     */
+    private void sendAccepted(CryptoEvent event) {
+        while (true) {
+            try {
+                producerService.send(event);
+                return;
+            } catch (IngestBackPressureException e) {
+                if (sender.isShutdown()) {
+                    throw e;
+                }
+                rateLimitedLog.warn("Conflated ticks waiting for the producer: {}", e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Drains are queued to the sender under the window's lock, so an early flush and the timed one
+     * cannot reorder ticks of the same asset; the send itself happens outside it.
+     */
+    private final class Window {
+
+        private final ConflatedPath path = new ConflatedPath(maxPoints);
+        private boolean scheduled;
+        // Ticks accepted since the last drain, including those conflation removed
+        private int accepted;
+
+        synchronized void add(CryptoEvent event) {
+            accepted++;
+            path.add(event);
+            if (path.isFull()) {
+                handOff();
+            } else if (!scheduled) {
+                scheduled = true;
+                flusher.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void flush() {
+            scheduled = false;
+            if (!path.isEmpty()) {
+                handOff();
+            }
+        }
+
+        private void handOff() {
+            List<CryptoEvent> drained = path.drain();
+            // Removed ticks will never be sent; their slots free up now
+            pending.release(accepted - drained.size());
+            accepted = 0;
+            sender.execute(() -> send(drained));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Timed flushes are superseded by the final flush below, which runs before the sender stops
+        flusher.shutdownNow();
+        windows.values().forEach(Window::flush);
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Conflated ticks still pending at shutdown: {}", maxPending - pending.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,9 +12,13 @@ public class UserInfoDetails implements UserDetails {
     private List<GrantedAuthority> authorities;
 
     public UserInfoDetails(User user) {
+        this(user, List.of());
+    }
+
+    public UserInfoDetails(User user, List<GrantedAuthority> authorities) {
         this.username = user.getUsername();
         this.password = user.getPassword();
-        this.authorities = List.of();
+        this.authorities = authorities;
     }
 
     @Override
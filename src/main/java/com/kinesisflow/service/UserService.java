@@ -4,24 +4,33 @@ import com.kinesisflow.exception.UserAlreadyExistsException;
 import com.kinesisflow.model.User;
 import com.kinesisflow.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService implements UserDetailsService {
 
     private final UserRepository repository;
     private final PasswordEncoder encoder;
+    // Usernames granted ROLE_ADMIN; self-registration never grants it
+    private final Set<String> adminUsers;
 
     @Autowired
-    public UserService(UserRepository repository, PasswordEncoder encoder) {
+    public UserService(UserRepository repository, PasswordEncoder encoder,
+                       @Value("${kinesisflow.security.admin-users:}") String[] adminUsers) {
         this.repository = repository;
         this.encoder = encoder;
+        this.adminUsers = Set.copyOf(Arrays.asList(adminUsers));
     }
 
     @Override
@@ -34,6 +43,9 @@ public class UserService implements UserDetailsService {
 
         // Convert User to UserDetails (UserInfoDetails)
         User userInfo = user.get();
+        if (adminUsers.contains(userInfo.getUsername())) {
+            return new UserInfoDetails(userInfo, List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        }
         return new UserInfoDetails(userInfo);
     }
     public Optional<User> findByUsername(String username) {
@@ -0,0 +1,163 @@
+package com.kinesisflow.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.record.IngestAck;
+import com.kinesisflow.serde.AssetDictionary;
+import com.kinesisflow.serde.CryptoEventBatchFormat;
+import com.kinesisflow.service.BatchIngestService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Persistent ingest channel for feed adapters. Each binary message is a CryptoEventBatchFormat
+ * frame; its events are validated and sent to Kafka, and once Kafka has answered for all of
+ * them the frame's sequence is acknowledged with the status of the items that failed.
+ *
+ * Flow control is credit based and counted in events: the session starts with initial-credits,
+ * every frame consumes as many credits as it holds events, and every ack returns them. A client
+ * that sends beyond its credits is disconnected, so a slow producer throttles the feed instead
+ * of buffering it.
+ */
+@Component
+public class IngestWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestWebSocketHandler.class);
+
+    private final Map<String, IngestSession> sessions = new ConcurrentHashMap<>();
+    private final BatchIngestService batchIngestService;
+    private final AssetDictionary dictionary;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Acks are written off the Kafka producer's I/O thread
+    private final ExecutorService ackSenders = Executors.newVirtualThreadPerTaskExecutor();
+    private final int initialCredits;
+    private final int maxBatchEvents;
+    private final Counter framesCounter;
+    private final Counter eventsCounter;
+
+    private record IngestSession(String userId, WebSocketSession session, AtomicInteger credits) {
+    }
+
+    public IngestWebSocketHandler(BatchIngestService batchIngestService,
+                                  @Value("${spring.kafka.properties.kinesisflow.serde.asset.dictionary:}") String dictionary,
+                                  @Value("${kinesisflow.ingest.ws.initial-credits:10000}") int initialCredits,
+                                  @Value("${kinesisflow.ingest.ws.max-batch-events:1000}") int maxBatchEvents,
+                                  MeterRegistry meterRegistry) {
+        this.batchIngestService = batchIngestService;
+        this.dictionary = AssetDictionary.of(dictionary);
+        this.initialCredits = initialCredits;
+        this.maxBatchEvents = maxBatchEvents;
+
+        Gauge.builder("kinesisflow.ingest.ws.sessions", sessions, Map::size)
+                .description("Open ingest WebSocket sessions")
+                .register(meterRegistry);
+        this.framesCounter = Counter.builder("kinesisflow.ingest.ws.frames.total")
+                .description("Batch frames received on the ingest WebSocket")
+                .register(meterRegistry);
+        this.eventsCounter = Counter.builder("kinesisflow.ingest.ws.events.total")
+                .description("Events received on the ingest WebSocket")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Principal principal = (Principal) session.getAttributes().get("userPrincipal");
+
+        if (principal == null || principal.getName() == null) {
+            log.warn("Ingest connection {} established without authentication. closing.", session.getId());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Authentication required"));
+            return;
+        }
+
+        // Acks complete on different threads; the decorator serialises the sends
+        WebSocketSession concurrent = new ConcurrentWebSocketSessionDecorator(session, 10_000, 64 * 1024);
+        IngestSession ingestSession = new IngestSession(principal.getName(), concurrent, new AtomicInteger(initialCredits));
+        sessions.put(session.getId(), ingestSession);
+        send(ingestSession, IngestAck.grant(initialCredits));
+        log.info("Ingest session {} opened for {}", session.getId(), principal.getName());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        IngestSession ingestSession = sessions.get(session.getId());
+        if (ingestSession == null) {
+            return;
+        }
+
+        ByteBuffer payload = message.getPayload();
+        byte[] frame = new byte[payload.remaining()];
+        payload.get(frame);
+
+        CryptoEventBatchFormat.Batch batch;
+        try {
+            batch = CryptoEventBatchFormat.decode(frame, dictionary, maxBatchEvents);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid ingest frame from {}: {}", ingestSession.userId(), e.getMessage());
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid batch frame"));
+            return;
+        }
+
+        int size = batch.events().size();
+        if (ingestSession.credits().addAndGet(-size) < 0) {
+            log.warn("Ingest session of {} sent {} events beyond its credits, closing.", ingestSession.userId(), size);
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Credit exceeded"));
+            return;
+        }
+        framesCounter.increment();
+        eventsCounter.increment(size);
+
+        batchIngestService.ingest(batch.events()).thenAcceptAsync(items -> {
+            int credits = ingestSession.credits().addAndGet(size);
+            send(ingestSession, IngestAck.of(batch.sequence(), items, credits));
+        }, ackSenders);
+    }
+
+    private void send(IngestSession ingestSession, IngestAck ack) {
+        WebSocketSession session = ingestSession.session();
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(ack)));
+        } catch (JsonProcessingException e) {
+            log.error("Could not encode ingest ack: {}", e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not send ingest ack to {}: {}", ingestSession.userId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        IngestSession ingestSession = sessions.remove(session.getId());
+        if (ingestSession != null) {
+            log.info("Ingest session {} of {} closed: {}", session.getId(), ingestSession.userId(), status);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ackSenders.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package com.kinesisflow.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.record.NotificationBatch;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A notification batch encoded once per tick. With the user included, Jackson writes one
+ * Notification with a placeholder user and the JSON is split around it, so each user's payload is
+ * prefix + user + suffix and byte-identical to serializing the Notification itself.
+ * Without the user every session receives the same shared TextMessage.
+ */
+public final class NotificationFrame {
+
+    private static final String USER_PLACEHOLDER = "\u0001user\u0001";
+
+    private final String asset;
+    private final String prefix;
+    private final String suffix;
+    private final TextMessage shared;
+
+    private NotificationFrame(String asset, String prefix, String suffix, TextMessage shared) {
+        this.asset = asset;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.shared = shared;
+    }
+
+    public static NotificationFrame of(NotificationBatch batch, ObjectMapper objectMapper, boolean includeUser)
+            throws JsonProcessingException {
+        if (!includeUser) {
+            Map<String, Object> userless = new LinkedHashMap<>();
+            userless.put("asset", batch.asset());
+            userless.put("price", batch.price());
+            userless.put("timestamp", batch.timestamp());
+            return new NotificationFrame(batch.asset(), null, null, new TextMessage(objectMapper.writeValueAsString(userless)));
+        }
+
+        String template = objectMapper.writeValueAsString(batch.forUser(USER_PLACEHOLDER));
+        String encodedPlaceholder = new String(JsonStringEncoder.getInstance().quoteAsString(USER_PLACEHOLDER));
+        int at = template.indexOf(encodedPlaceholder);
+        return new NotificationFrame(batch.asset(), template.substring(0, at),
+                template.substring(at + encodedPlaceholder.length()), null);
+    }
+
+    public String asset() {
+        return asset;
+    }
+
+    public boolean isShared() {
+        return shared != null;
+    }
+
+    public TextMessage sharedMessage() {
+        return shared;
+    }
+
+    public String payloadFor(String user) {
+        StringBuilder payload = new StringBuilder(prefix.length() + user.length() + suffix.length());
+        payload.append(prefix);
+        JsonStringEncoder.getInstance().quoteAsString(user, payload);
+        return payload.append(suffix).toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.kinesisflow.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Maps users to notification channels "alerts:{shard}". The engine publishes each user to the
+ * shard of its hash and nodes subscribe only to the shards of the users connected to them.
+ */
+@Component
+public class NotificationShards {
+
+    public static final String CHANNEL_PREFIX = "alerts:";
+
+    private final int shards;
+
+    public NotificationShards(@Value("${kinesisflow.notifications.shards:64}") int shards) {
+        this.shards = shards;
+    }
+
+    public int shardOf(String user) {
+        return Math.floorMod(user.hashCode(), shards);
+    }
+
+    public String channelOf(int shard) {
+        return CHANNEL_PREFIX + shard;
+    }
+
+    public String channelOfUser(String user) {
+        return channelOf(shardOf(user));
+    }
+
+    public Map<String, List<String>> groupByChannel(Collection<String> users) {
+        Map<String, List<String>> usersByChannel = new HashMap<>();
+        for (String user : users) {
+            usersByChannel.computeIfAbsent(channelOfUser(user), c -> new ArrayList<>()).add(user);
+        }
+        return usersByChannel;
+    }
+}
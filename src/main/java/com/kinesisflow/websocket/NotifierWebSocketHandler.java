@@ -1,23 +1,91 @@
 package com.kinesisflow.websocket;
 
+import com.kinesisflow.logging.RateLimitedLogger;
+import com.kinesisflow.record.PipelineTrace;
+import com.kinesisflow.service.NotificationInboxService;
+import com.kinesisflow.service.PipelineLatencyService;
+import com.kinesisflow.websocket.OutboundSessionQueue.OverflowPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component
-public class NotifierWebSocketHandler extends TextWebSocketHandler {
+public class NotifierWebSocketHandler extends TextWebSocketHandler implements OutboundSessionQueue.Listener {
 
     private static final Logger log = LoggerFactory.getLogger(NotifierWebSocketHandler.class);
-    private final Map<String, WebSocketSession> sessionsByUserId = new ConcurrentHashMap<>();
+    // Overflows repeat on every offer while a consumer stays slow; the dropped counter has the volume
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 10, Duration.ofSeconds(10));
+    private static final OutboundSessionQueue[] NO_SESSIONS = new OutboundSessionQueue[0];
+
+    /*
+     * Every open session of a user (several tabs or devices). The arrays are replaced on connect
+     * and close, never mutated, so senders iterate a snapshot without locking.
+     */
+    private final Map<String, OutboundSessionQueue[]> sessionsByUserId = new ConcurrentHashMap<>();
+    private final SessionOwnershipRegistry sessionOwnershipRegistry;
+    private final PresenceRegistry presenceRegistry;
+    private final NotificationInboxService notificationInboxService;
+    private final PipelineLatencyService pipelineLatencyService;
+    private final OutboundSessionQueue.Limits outboundLimits;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter droppedCounter;
+    private final MeterRegistry meterRegistry;
+
+    public NotifierWebSocketHandler(SessionOwnershipRegistry sessionOwnershipRegistry,
+                                    PresenceRegistry presenceRegistry,
+                                    NotificationInboxService notificationInboxService,
+                                    PipelineLatencyService pipelineLatencyService,
+                                    @Value("${kinesisflow.websocket.outbound.max-messages:1000}") int maxMessages,
+                                    @Value("${kinesisflow.websocket.outbound.buffer-size-limit:524288}") int bufferSizeLimit,
+                                    @Value("${kinesisflow.websocket.outbound.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                                    @Value("${kinesisflow.websocket.outbound.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                                    MeterRegistry meterRegistry) {
+        this.sessionOwnershipRegistry = sessionOwnershipRegistry;
+        this.presenceRegistry = presenceRegistry;
+        this.notificationInboxService = notificationInboxService;
+        this.pipelineLatencyService = pipelineLatencyService;
+        this.outboundLimits = new OutboundSessionQueue.Limits(maxMessages, bufferSizeLimit, sendTimeLimitMs, overflowPolicy);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("kinesisflow.websocket.outbound.queued", sessionsByUserId,
+                        sessions -> sessions.values().stream().flatMap(Arrays::stream).mapToInt(OutboundSessionQueue::depth).sum())
+                .description("Messages waiting in the outbound queues of all sessions")
+                .register(meterRegistry);
+        Gauge.builder("kinesisflow.websocket.outbound.queued.max", sessionsByUserId,
+                        sessions -> sessions.values().stream().flatMap(Arrays::stream).mapToInt(OutboundSessionQueue::depth).max().orElse(0))
+                .description("Deepest outbound queue of a single session")
+                .register(meterRegistry);
+        Gauge.builder("kinesisflow.websocket.sessions", sessionsByUserId,
+                        sessions -> sessions.values().stream().mapToInt(queues -> queues.length).sum())
+                .description("Open notification sessions on this node")
+                .register(meterRegistry);
+        Gauge.builder("kinesisflow.websocket.users", sessionsByUserId, Map::size)
+                .description("Users with at least one open notification session on this node")
+                .register(meterRegistry);
+
+        this.droppedCounter = Counter.builder("kinesisflow.websocket.outbound.dropped.total")
+                .description("Messages dropped or coalesced because a session queue overflowed")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+    }
 
 
     @Override
@@ -31,8 +99,39 @@ public class NotifierWebSocketHandler extends TextWebSocketHandler {
         }
 
         String userId = principal.getName();
-        sessionsByUserId.put(userId, session);
+        OutboundSessionQueue queue = new OutboundSessionQueue(userId, session, outboundLimits, senders, this);
+        OutboundSessionQueue[] queues = sessionsByUserId.merge(userId, new OutboundSessionQueue[]{queue}, (current, added) -> {
+            OutboundSessionQueue[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = added[0];
+            return grown;
+        });
+        if (queues.length == 1) {
+            sessionOwnershipRegistry.register(userId);
+        }
+        presenceRegistry.markOnline(userId);
         log.info("Session {} REGISTERED for the user: {}", session.getId(), userId);
+
+        deliverInbox(userId, queue);
+    }
+
+    // Notifications stored while the user was offline, oldest first
+    private void deliverInbox(String userId, OutboundSessionQueue queue) {
+        List<String> pending;
+        try {
+            pending = notificationInboxService.drain(userId);
+        } catch (RuntimeException e) {
+            log.warn("Could not read the inbox of user {}: {}", userId, e.getMessage());
+            return;
+        }
+
+        for (String payload : pending) {
+            if (!queue.offer(coalesceKeyOf(payload), new TextMessage(payload))) {
+                storeOffline(userId, payload);
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Queued {} stored notifications for the user {}.", pending.size(), userId);
+        }
     }
 
     @Override
@@ -40,24 +139,109 @@ public class NotifierWebSocketHandler extends TextWebSocketHandler {
         Principal principal = (Principal) session.getAttributes().get("userPrincipal");
         if (principal != null && principal.getName() != null) {
             String userId = principal.getName();
-            sessionsByUserId.remove(userId);
+            OutboundSessionQueue[] remaining = sessionsByUserId.computeIfPresent(userId, (u, queues) -> {
+                OutboundSessionQueue[] kept = Arrays.stream(queues)
+                        .filter(queue -> queue.session() != session)
+                        .toArray(OutboundSessionQueue[]::new);
+                return kept.length == 0 ? null : kept;
+            });
+            // Only the user's last session takes it offline
+            if (remaining == null) {
+                sessionOwnershipRegistry.unregister(userId);
+                presenceRegistry.markOffline(userId);
+            }
             log.info("Session for the user {} closed.", userId);
         }
     }
 
-    public void sendMessageToUser(String userId, String payload) {
-        WebSocketSession session = sessionsByUserId.get(userId);
-        if (session != null && session.isOpen()) {
-            try {
-                session.sendMessage(new TextMessage(payload));
-                log.info("MESSAGE SENT for the user {}.", userId);
+    public boolean isConnected(String userId) {
+        for (OutboundSessionQueue queue : sessionsByUserId.getOrDefault(userId, NO_SESSIONS)) {
+            if (queue.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Only enqueues; each session's sender drains its queue on its own virtual thread.
+     * The frame is built once and the same TextMessage is queued on every session of the user.
+     * trace is null for notifications that were not traced through the pipeline.
+     */
+    public void sendMessageToUser(String userId, String payload, PipelineTrace trace) {
+        if (enqueue(userId, new TextMessage(payload), coalesceKeyOf(payload), trace) == 0) {
+            // Disconnected between the presence check and delivery
+            log.debug("User {} not connected or session closed, storing notification.", userId);
+            storeOffline(userId, payload);
+        }
+    }
+
+    // Pre-encoded frame shared by every recipient of a tick; the asset is the coalescing key
+    public void sendFrameToUser(String userId, TextMessage frame, String asset, PipelineTrace trace) {
+        if (enqueue(userId, frame, asset, trace) == 0) {
+            log.debug("User {} not connected or session closed, storing notification.", userId);
+            storeOffline(userId, frame.getPayload());
+        }
+    }
 
-            } catch (IOException e) {
-                log.error("Error sending the message to the user {}: {}", userId, e.getMessage());
+    private int enqueue(String userId, TextMessage message, String coalesceKey, PipelineTrace trace) {
+        int queued = 0;
+        for (OutboundSessionQueue queue : sessionsByUserId.getOrDefault(userId, NO_SESSIONS)) {
+            if (queue.isOpen() && queue.offer(coalesceKey, message, trace)) {
+                queued++;
             }
         }
-        else {
-            System.out.println("❌ User " + userId + " not connected or session closed.");
+        return queued;
+    }
+
+    @Override
+    public void onDropped(OutboundSessionQueue queue, int messages) {
+        droppedCounter.increment(messages);
+        rateLimitedLog.warn("Outbound queue of the user {} overflowed, {} messages dropped ({}).",
+                queue.userId(), messages, outboundLimits.overflowPolicy());
+    }
+
+    // Slow or broken consumer: whatever it did not receive waits in its inbox
+    @Override
+    public void onEvicted(OutboundSessionQueue queue, List<String> pending, String reason) {
+        meterRegistry.counter("kinesisflow.websocket.sessions.evicted.total", "reason", reason).increment();
+        log.warn("Session {} of the user {} evicted ({}), {} messages moved to the inbox.",
+                queue.session().getId(), queue.userId(), reason, pending.size());
+        pending.forEach(payload -> storeOffline(queue.userId(), payload));
+    }
+
+    @Override
+    public void onSent(OutboundSessionQueue queue, PipelineTrace trace) {
+        pipelineLatencyService.delivered(trace);
+    }
+
+    /*
+     * Coalescing key of a Notification payload: its asset, which Jackson writes as the first
+     * property. Only looked up when the COALESCE policy needs it.
+     */
+    private String coalesceKeyOf(String payload) {
+        if (outboundLimits.overflowPolicy() != OverflowPolicy.COALESCE) {
+            return null;
+        }
+        int start = payload.indexOf("\"asset\":\"");
+        if (start < 0) {
+            return null;
         }
+        start += "\"asset\":\"".length();
+        int end = payload.indexOf('"', start);
+        return end < 0 ? null : payload.substring(start, end);
+    }
+
+    private void storeOffline(String userId, String payload) {
+        try {
+            notificationInboxService.store(userId, payload);
+        } catch (RuntimeException e) {
+            log.error("Notification for the user {} lost: {}", userId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdown();
     }
 }
@@ -0,0 +1,242 @@
+package com.kinesisflow.websocket;
+
+import com.kinesisflow.jfr.DeliveryEvent;
+import com.kinesisflow.record.PipelineTrace;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/*
+ * Bounded outbound queue of one WebSocket session, in the spirit of Spring's
+ * ConcurrentWebSocketSessionDecorator but never sending on the caller's thread: offers only
+ * enqueue, and a single drain task on the executor is the session's only sender.
+ * Messages are shared, already encoded TextMessages, so a user's sessions queue the same frame.
+ * The deque starts small and nothing else is allocated per session until messages flow.
+ * When the queue exceeds its message or buffer limit the overflow policy applies; a send that
+ * has been blocked longer than the send time limit evicts the session regardless of the policy.
+ * A traced message is reported to the listener once its send has returned; every send is also a
+ * DeliveryEvent for Flight Recorder.
+ */
+final class OutboundSessionQueue {
+
+    enum OverflowPolicy {
+        // Drop the oldest queued messages until the queue fits again
+        DROP_OLDEST,
+        // Replace an older queued message of the same asset, otherwise drop the oldest
+        COALESCE,
+        // Close the session as a slow consumer
+        DISCONNECT
+    }
+
+    record Limits(int maxMessages, int bufferSizeLimit, long sendTimeLimitMs, OverflowPolicy overflowPolicy) {
+    }
+
+    interface Listener {
+
+        void onDropped(OutboundSessionQueue queue, int messages);
+
+        // pending holds the undelivered payloads, oldest first
+        void onEvicted(OutboundSessionQueue queue, List<String> pending, String reason);
+
+        void onSent(OutboundSessionQueue queue, PipelineTrace trace);
+    }
+
+    private record Outbound(String coalesceKey, TextMessage message, PipelineTrace trace, long enqueuedAt) {
+
+        int size() {
+            return message.getPayloadLength();
+        }
+    }
+
+    private final String userId;
+    private final WebSocketSession session;
+    private final Limits limits;
+    private final Executor executor;
+    private final Listener listener;
+
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>(4);
+    private int bufferedSize;
+    private boolean draining;
+    private boolean closed;
+    private volatile long sendStartedAt;
+
+    OutboundSessionQueue(String userId, WebSocketSession session, Limits limits, Executor executor, Listener listener) {
+        this.userId = userId;
+        this.session = session;
+        this.limits = limits;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    String userId() {
+        return userId;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    boolean isOpen() {
+        return session.isOpen() && !isClosed();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    /*
+     * Returns false if the session was already closed; the caller keeps responsibility for the
+     * payload. When this offer evicts the session the payload is handed to the listener with the
+     * rest of the queue.
+     */
+    boolean offer(String coalesceKey, TextMessage message) {
+        return offer(coalesceKey, message, null);
+    }
+
+    boolean offer(String coalesceKey, TextMessage message, PipelineTrace trace) {
+        List<String> evicted = null;
+        String reason = null;
+        int dropped = 0;
+        boolean schedule = false;
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (isSendTimeExceeded()) {
+                evicted = closeLocked();
+                evicted.add(message.getPayload());
+                reason = "send-time-limit";
+            } else {
+                Outbound outbound = new Outbound(coalesceKey, message, trace, System.nanoTime());
+                queue.addLast(outbound);
+                bufferedSize += outbound.size();
+
+                while (isOverLimit() && !queue.isEmpty()) {
+                    if (limits.overflowPolicy() == OverflowPolicy.DISCONNECT) {
+                        evicted = closeLocked();
+                        reason = "buffer-limit";
+                        break;
+                    }
+                    if (limits.overflowPolicy() != OverflowPolicy.COALESCE || !coalesceLocked(coalesceKey)) {
+                        bufferedSize -= queue.pollFirst().size();
+                    }
+                    dropped++;
+                }
+
+                if (!closed && !draining && !queue.isEmpty()) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+
+        if (dropped > 0) {
+            listener.onDropped(this, dropped);
+        }
+        if (evicted != null) {
+            evict(evicted, reason);
+        } else if (schedule) {
+            executor.execute(this::drain);
+        }
+        return true;
+    }
+
+    // Removes the oldest queued message with the same key, leaving the newest (last) one in place
+    private boolean coalesceLocked(String coalesceKey) {
+        if (coalesceKey == null || queue.size() < 2) {
+            return false;
+        }
+        Iterator<Outbound> iterator = queue.iterator();
+        for (int i = 0; i < queue.size() - 1; i++) {
+            Outbound queued = iterator.next();
+            if (coalesceKey.equals(queued.coalesceKey())) {
+                iterator.remove();
+                bufferedSize -= queued.size();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOverLimit() {
+        return queue.size() > limits.maxMessages() || bufferedSize > limits.bufferSizeLimit();
+    }
+
+    private boolean isSendTimeExceeded() {
+        long startedAt = sendStartedAt;
+        return startedAt != 0 && System.nanoTime() - startedAt > limits.sendTimeLimitMs() * 1_000_000L;
+    }
+
+    private List<String> closeLocked() {
+        closed = true;
+        List<String> pending = new ArrayList<>(queue.size());
+        queue.forEach(outbound -> pending.add(outbound.message().getPayload()));
+        queue.clear();
+        bufferedSize = 0;
+        return pending;
+    }
+
+    private void drain() {
+        while (true) {
+            Outbound next;
+            synchronized (this) {
+                next = queue.pollFirst();
+                if (next == null || closed) {
+                    draining = false;
+                    return;
+                }
+                bufferedSize -= next.size();
+            }
+
+            long startedAt = System.nanoTime();
+            sendStartedAt = startedAt;
+            DeliveryEvent event = new DeliveryEvent();
+            event.begin();
+            try {
+                session.sendMessage(next.message());
+                if (event.shouldCommit()) {
+                    event.userId = userId;
+                    event.sessionId = session.getId();
+                    event.queueTime = startedAt - next.enqueuedAt();
+                    event.bytes = next.size();
+                    event.commit();
+                }
+            } catch (IOException | RuntimeException e) {
+                List<String> pending;
+                synchronized (this) {
+                    pending = closeLocked();
+                    draining = false;
+                }
+                pending.add(0, next.message().getPayload());
+                evict(pending, "send-failure");
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+            if (next.trace() != null) {
+                listener.onSent(this, next.trace());
+            }
+        }
+    }
+
+    private void evict(List<String> pending, String reason) {
+        listener.onEvicted(this, pending, reason);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            // The session is being discarded either way
+        }
+    }
+}
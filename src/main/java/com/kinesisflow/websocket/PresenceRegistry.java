@@ -0,0 +1,133 @@
+package com.kinesisflow.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Cluster-wide presence: per user, a sorted set of node -> expiry time. A user is online while
+ * any node's entry is unexpired, and a node going offline removes only its own entry, so a user
+ * with sessions on several nodes stays online until the last of them closes. Each node refreshes
+ * the users it holds on a heartbeat, so entries of a node that died without closing its sessions
+ * expire after the TTL instead of keeping the user online forever.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    static final String PRESENCE_KEY_PREFIX = "ws:presence:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final long ttlMs;
+    private final Set<String> localUsers = ConcurrentHashMap.newKeySet();
+
+    public PresenceRegistry(StringRedisTemplate redisTemplate,
+                            @Value("${kinesisflow.node-id:${random.uuid}}") String nodeId,
+                            @Value("${kinesisflow.presence.ttl-ms:30000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId;
+        this.ttlMs = ttlMs;
+    }
+
+    public void markOnline(String userId) {
+        localUsers.add(userId);
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                refresh((StringRedisConnection) connection, userId, now);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not mark user {} online: {}", userId, e.getMessage());
+        }
+    }
+
+    // Removes only this node's entry; sessions the user holds on other nodes keep it online
+    public void markOffline(String userId) {
+        localUsers.remove(userId);
+        try {
+            redisTemplate.opsForZSet().remove(keyOf(userId), nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Could not mark user {} offline: {}", userId, e.getMessage());
+        }
+    }
+
+    /*
+     * One pipelined ZCOUNT of unexpired node entries per user. If presence cannot be read every
+     * user is treated as online, which falls back to publishing as before rather than diverting
+     * to the inbox.
+     */
+    public Set<String> onlineUsers(Collection<String> users) {
+        if (users.isEmpty()) {
+            return Set.of();
+        }
+
+        String[] members = users.toArray(new String[0]);
+        long now = System.currentTimeMillis();
+        List<Object> counts;
+        try {
+            counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String userId : members) {
+                    stringConnection.zCount(keyOf(userId), now, Double.POSITIVE_INFINITY);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Presence lookup failed, assuming {} users online: {}", members.length, e.getMessage());
+            return new HashSet<>(users);
+        }
+
+        Set<String> online = new HashSet<>();
+        for (int i = 0; i < members.length; i++) {
+            if (counts.get(i) instanceof Long count && count > 0) {
+                online.add(members[i]);
+            }
+        }
+        return online;
+    }
+
+    @Scheduled(fixedDelayString = "${kinesisflow.presence.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String userId : localUsers) {
+                    refresh(stringConnection, userId, now);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Presence heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    /*
+     * Writes this node's entry and drops expired ones of other nodes. The key itself expires
+     * with the last refresh, so a user whose nodes all died leaves nothing behind.
+     */
+    private void refresh(StringRedisConnection connection, String userId, long now) {
+        String key = keyOf(userId);
+        connection.zAdd(key, now + ttlMs, nodeId);
+        connection.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, now);
+        connection.pExpire(key, ttlMs);
+    }
+
+    private static String keyOf(String userId) {
+        return PRESENCE_KEY_PREFIX + userId;
+    }
+}
@@ -2,11 +2,17 @@ package com.kinesisflow.websocket;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.jfr.PublishEvent;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Service
 public class RedisMessagePublisher {
 
@@ -19,13 +25,54 @@ public class RedisMessagePublisher {
   }
 
     public void publish(String channel, Object object) {
+        PublishEvent event = new PublishEvent();
+        event.begin();
         try {
             String json = objectMapper.writeValueAsString(object);
             redisTemplate.convertAndSend(channel, json);
+            commit(event, 1, json.length());
         } catch (JsonProcessingException e) {
             throw new SerializationException("Failed to serialize object to JSON", e);
         } catch (DataAccessException e) {
             throw e;
         }
     }
+
+    // Serializes every message first, then sends all PUBLISH commands in one pipeline
+    public void publishAll(Map<String, ?> objectsByChannel) {
+        PublishEvent event = new PublishEvent();
+        event.begin();
+        Map<String, String> jsonByChannel = new LinkedHashMap<>();
+        long bytes = 0;
+        try {
+            for (Map.Entry<String, ?> entry : objectsByChannel.entrySet()) {
+                String json = objectMapper.writeValueAsString(entry.getValue());
+                jsonByChannel.put(entry.getKey(), json);
+                bytes += json.length();
+            }
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to serialize object to JSON", e);
+        }
+
+        if (jsonByChannel.size() == 1) {
+            Map.Entry<String, String> only = jsonByChannel.entrySet().iterator().next();
+            redisTemplate.convertAndSend(only.getKey(), only.getValue());
+        } else {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                jsonByChannel.forEach(stringConnection::publish);
+                return null;
+            });
+        }
+        commit(event, jsonByChannel.size(), bytes);
+    }
+
+    // Only successful publishes are recorded; bytes counts JSON characters
+    private static void commit(PublishEvent event, int channels, long bytes) {
+        if (event.shouldCommit()) {
+            event.channels = channels;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
 }
@@ -1,48 +1,170 @@
 package com.kinesisflow.websocket;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.kinesisflow.record.Notification;
+import com.kinesisflow.logging.RateLimitedLogger;
+import com.kinesisflow.record.NotificationBatch;
+import com.kinesisflow.record.PipelineTrace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 
 @Service
 public class RedisMessageSubscriber implements MessageListener {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final NotifierWebSocketHandler notifierWebSocketHandler;
+    private final boolean includeUser;
+    private final Counter messagesCounter;
+    private final Counter deliveredCounter;
     private static final Logger log = LoggerFactory.getLogger(RedisMessageSubscriber.class);
+    private static final RateLimitedLogger rateLimitedLog = RateLimitedLogger.of(log, 10, Duration.ofSeconds(10));
 
-    public RedisMessageSubscriber(NotifierWebSocketHandler notifierWebSocketHandler) {
+    public RedisMessageSubscriber(NotifierWebSocketHandler notifierWebSocketHandler,
+                                  @Value("${kinesisflow.websocket.frame.include-user:true}") boolean includeUser,
+                                  MeterRegistry meterRegistry) {
         this.notifierWebSocketHandler = notifierWebSocketHandler;
+        this.includeUser = includeUser;
+
+        this.messagesCounter = Counter.builder("kinesisflow.notifications.received.total")
+                .description("Notification messages received from pub/sub on this node")
+                .register(meterRegistry);
+        this.deliveredCounter = Counter.builder("kinesisflow.notifications.delivered.total")
+                .description("Notifications handed to a local user's sessions")
+                .register(meterRegistry);
     }
 
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
-        String json = new String(message.getBody());
+        byte[] body = message.getBody();
+        messagesCounter.increment();
 
         try {
 
-            Notification obj = objectMapper.readValue(json, Notification.class);
-            log.info("Message from Pub/Sub received for the user: {}", obj.user());
-            notifierWebSocketHandler.sendMessageToUser(obj.user(), json);
-            log.info("Notification sent -> Asset: {}, Price: {}", obj.asset(), obj.price());
+            // Streaming read straight from the bytes: no tree, no intermediate String
+            String asset = null;
+            BigDecimal price = null;
+            long timestamp = 0;
+            String user = null;
+            List<String> users = null;
+            PipelineTrace trace = null;
 
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "asset" -> asset = parser.getValueAsString();
+                        case "price" -> price = value == JsonToken.VALUE_NULL ? null : parser.getDecimalValue();
+                        case "timestamp" -> timestamp = parser.getValueAsLong();
+                        case "user" -> user = parser.getValueAsString();
+                        case "users" -> users = readUsers(parser);
+                        case "trace" -> trace = readTrace(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
 
+            if (users != null) {
+                deliverBatch(new NotificationBatch(asset, price, timestamp, users, trace));
+                return;
+            }
 
+            // Single notification, as published before batching: forwarded as received
+            if (user != null && notifierWebSocketHandler.isConnected(user)) {
+                notifierWebSocketHandler.sendMessageToUser(user, new String(body, StandardCharsets.UTF_8), null);
+                deliveredCounter.increment();
+            }
+            rateLimitedLog.debug("Notification for {} -> Asset: {}, Price: {}", user, asset, price);
 
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
 
-            log.error("Deserialization error in Redis Pub/Sub message. Message: '{}'", message, e);
+            rateLimitedLog.error("Deserialization error in Redis Pub/Sub message. Message: '{}'", message, e);
 
         }
         catch (Exception e) {
-            log.error("Unexpected error while processing Redis Pub/Sub notification. Message: '{}'", message, e);
+            rateLimitedLog.error("Unexpected error while processing Redis Pub/Sub notification. Message: '{}'", message, e);
+        }
+    }
+
+    private List<String> readUsers(JsonParser parser) throws IOException {
+        List<String> users = new ArrayList<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return users;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            users.add(parser.getValueAsString());
+        }
+        return users;
+    }
+
+    private PipelineTrace readTrace(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        long ingestedAt = 0;
+        long appendedAt = 0;
+        long consumedAt = 0;
+        long publishedAt = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "ingestedAt" -> ingestedAt = parser.getValueAsLong();
+                case "appendedAt" -> appendedAt = parser.getValueAsLong();
+                case "consumedAt" -> consumedAt = parser.getValueAsLong();
+                case "publishedAt" -> publishedAt = parser.getValueAsLong();
+                default -> parser.skipChildren();
+            }
+        }
+        return ingestedAt > 0 ? new PipelineTrace(ingestedAt, appendedAt, consumedAt, publishedAt) : null;
+    }
+
+    /*
+     * Every node subscribed to the shard receives the batch; only users with a session on this
+     * node are expanded. The frame is encoded once per batch and only the user is spliced in
+     * per recipient, or nothing at all when the user is omitted from the payload.
+     */
+    private void deliverBatch(NotificationBatch batch) throws JsonProcessingException {
+        NotificationFrame frame = null;
+        int delivered = 0;
+        for (String user : batch.users()) {
+            if (user == null || !notifierWebSocketHandler.isConnected(user)) {
+                continue;
+            }
+            if (frame == null) {
+                frame = NotificationFrame.of(batch, objectMapper, includeUser);
+            }
+            if (frame.isShared()) {
+                notifierWebSocketHandler.sendFrameToUser(user, frame.sharedMessage(), frame.asset(), batch.trace());
+            } else {
+                notifierWebSocketHandler.sendMessageToUser(user, frame.payloadFor(user), batch.trace());
+            }
+            delivered++;
         }
+        deliveredCounter.increment(delivered);
+        rateLimitedLog.debug("Notification batch -> Asset: {}, Price: {}, users: {}, delivered here: {}",
+                batch.asset(), batch.price(), batch.users().size(), delivered);
     }
 }
@@ -0,0 +1,97 @@
+package com.kinesisflow.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Tracks which users hold a session on this node. The node is subscribed to a notification shard
+ * exactly while at least one of its local users hashes to it. Which nodes hold a user's sessions
+ * is known to the rest of the cluster through PresenceRegistry.
+ * The container and listener are resolved lazily: the subscriber depends on the WebSocket
+ * handler, which depends on this registry.
+ */
+@Component
+public class SessionOwnershipRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionOwnershipRegistry.class);
+
+    private final NotificationShards notificationShards;
+    private final ObjectProvider<RedisMessageListenerContainer> redisContainer;
+    private final ObjectProvider<MessageListenerAdapter> listenerAdapter;
+    private final Map<Integer, Set<String>> usersByShard = new HashMap<>();
+    private final Map<Integer, Object> shardLocks = new ConcurrentHashMap<>();
+    // Shards the container is subscribed to; each entry changes only under its shard's lock
+    private final Set<Integer> subscribed = ConcurrentHashMap.newKeySet();
+
+    public SessionOwnershipRegistry(NotificationShards notificationShards,
+                                    ObjectProvider<RedisMessageListenerContainer> redisContainer,
+                                    ObjectProvider<MessageListenerAdapter> listenerAdapter) {
+        this.notificationShards = notificationShards;
+        this.redisContainer = redisContainer;
+        this.listenerAdapter = listenerAdapter;
+    }
+
+    public void register(String userId) {
+        int shard = notificationShards.shardOf(userId);
+        boolean firstUser;
+        synchronized (usersByShard) {
+            Set<String> users = usersByShard.computeIfAbsent(shard, s -> new HashSet<>());
+            firstUser = users.isEmpty();
+            users.add(userId);
+        }
+        if (firstUser) {
+            updateSubscription(shard);
+        }
+    }
+
+    public void unregister(String userId) {
+        int shard = notificationShards.shardOf(userId);
+        boolean lastUser = false;
+        synchronized (usersByShard) {
+            Set<String> users = usersByShard.get(shard);
+            if (users != null && users.remove(userId) && users.isEmpty()) {
+                usersByShard.remove(shard);
+                lastUser = true;
+            }
+        }
+        if (lastUser) {
+            updateSubscription(shard);
+        }
+    }
+
+    /*
+     * Subscribing talks to Redis, so it happens outside the usersByShard lock, one shard at a time
+     * under the shard's own lock. The shard is matched to whether it has local users at that point,
+     * so when a subscribe and an unsubscribe race, whichever runs last leaves the right state.
+     */
+    private void updateSubscription(int shard) {
+        synchronized (shardLocks.computeIfAbsent(shard, s -> new Object())) {
+            boolean wanted;
+            synchronized (usersByShard) {
+                wanted = usersByShard.containsKey(shard);
+            }
+            if (wanted && subscribed.add(shard)) {
+                redisContainer.getObject().addMessageListener(listenerAdapter.getObject(), topicOf(shard));
+                log.info("Subscribed to notification shard {}", shard);
+            } else if (!wanted && subscribed.remove(shard)) {
+                redisContainer.getObject().removeMessageListener(listenerAdapter.getObject(), topicOf(shard));
+                log.info("Unsubscribed from notification shard {}", shard);
+            }
+        }
+    }
+
+    private ChannelTopic topicOf(int shard) {
+        return new ChannelTopic(notificationShards.channelOf(shard));
+    }
+}
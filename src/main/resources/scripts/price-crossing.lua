@@ -0,0 +1,32 @@
+-- Atomically swaps the last price of an asset and returns the rule index members it crossed.
+-- KEYS[1] = last price key, KEYS[2] = GT rule index (type 1), KEYS[3] = LT rule index (type -1)
+-- ARGV[1] = new price in fixed-point units, ARGV[2] = price scale of the asset
+-- Returns { previous price as stored or '' if none, member... }
+local previous = redis.call('GET', KEYS[1])
+redis.call('SET', KEYS[1], ARGV[1])
+
+if not previous then
+    return { '' }
+end
+
+local current = tonumber(ARGV[1])
+local former = tonumber(previous)
+-- Bounds are passed as integral strings: concatenating a Lua number formats it with %.14g
+local formerBound = previous
+-- Last prices written before the fixed-point encoding are plain decimals
+if string.find(previous, '.', 1, true) then
+    former = math.floor(former * 10 ^ tonumber(ARGV[2]) + 0.5)
+    formerBound = string.format('%d', former)
+end
+local members
+
+if current > former then
+    members = redis.call('ZRANGEBYSCORE', KEYS[2], formerBound, '(' .. ARGV[1])
+elseif current < former then
+    members = redis.call('ZRANGEBYSCORE', KEYS[3], ARGV[1], '(' .. formerBound)
+else
+    members = {}
+end
+
+table.insert(members, 1, previous)
+return members
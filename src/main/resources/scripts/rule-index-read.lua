@@ -0,0 +1,9 @@
+-- Reads a rule index together with its version, so a snapshot is only installed over older state.
+-- KEYS[1] = rule index, KEYS[2] = hash of rule index versions
+-- Returns { version or '0' if never changed, member, score, member, score... }
+local result = { redis.call('HGET', KEYS[2], KEYS[1]) or '0' }
+local entries = redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES')
+for i = 1, #entries do
+    result[#result + 1] = entries[i]
+end
+return result
@@ -0,0 +1,10 @@
+-- Moves rule index members written before the fixed-point encoding to their fixed-point score.
+-- XX only updates members that still exist, so an alert removed since its score was read is
+-- never added back.
+-- KEYS[1] = rule index, ARGV = score (fixed-point units), member pairs
+-- Returns the number of members re-scored
+local rescored = 0
+for i = 1, #ARGV, 2 do
+    rescored = rescored + redis.call('ZADD', KEYS[1], 'XX', 'CH', ARGV[i], ARGV[i + 1])
+end
+return rescored
@@ -0,0 +1,26 @@
+-- Adds or removes rule index members and publishes the change with the key's new version, so
+-- every node applies changes in order and notices the ones it missed.
+-- KEYS[1] = rule index, KEYS[2] = hash of rule index versions
+-- ARGV[1] = channel, ARGV[2] = 'add' or 'remove'
+-- ARGV[3..] = score (fixed-point units), member pairs for 'add'; members for 'remove'
+-- Returns { new version, members added or removed }
+local version = redis.call('HINCRBY', KEYS[2], KEYS[1], 1)
+local changed = 0
+local args = {}
+
+if ARGV[2] == 'add' then
+    for i = 3, #ARGV, 2 do
+        changed = changed + redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])
+    end
+else
+    for i = 3, #ARGV do
+        changed = changed + redis.call('ZREM', KEYS[1], ARGV[i])
+    end
+end
+
+for i = 3, #ARGV do
+    args[#args + 1] = ARGV[i]
+end
+redis.call('PUBLISH', ARGV[1], cjson.encode({ key = KEYS[1], version = version, op = ARGV[2], args = args }))
+
+return { version, changed }
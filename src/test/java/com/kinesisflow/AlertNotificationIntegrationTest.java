@@ -285,7 +285,7 @@ class AlertNotificationIntegrationTest {
         waitForMessages(1, 10);
 
         verify(webSocketHandler, timeout(5000).atLeastOnce())
-                .sendMessageToUser(eq(TEST_USERNAME), anyString());
+                .sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
     }
 
     @Test
@@ -307,7 +307,7 @@ class AlertNotificationIntegrationTest {
         waitForMessages(1, 10);
 
         verify(webSocketHandler, timeout(5000).atLeastOnce())
-                .sendMessageToUser(eq(TEST_USERNAME), anyString());
+                .sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
     }
 
     @Test
@@ -339,7 +339,7 @@ class AlertNotificationIntegrationTest {
 
         assertEquals(2, messageCount.get(), "Should have received exactly 2 notifications");
         verify(webSocketHandler, timeout(10000).times(2))
-                .sendMessageToUser(eq(TEST_USERNAME), anyString());
+                .sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
     }
 
     @Test
@@ -369,7 +369,7 @@ class AlertNotificationIntegrationTest {
         Thread.sleep(2000);
 
         assertEquals(0, messageCount.get(), "Should not have received any messages");
-        verify(webSocketHandler, never()).sendMessageToUser(eq(TEST_USERNAME), anyString());
+        verify(webSocketHandler, never()).sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
 
         log.info("Test completed - Final message count: {}", messageCount.get());
     }
@@ -401,7 +401,7 @@ class AlertNotificationIntegrationTest {
         Thread.sleep(2000);
 
         assertEquals(0, messageCount.get(), "Should not have received any messages after unsubscribe");
-        verify(webSocketHandler, never()).sendMessageToUser(eq(TEST_USERNAME), anyString());
+        verify(webSocketHandler, never()).sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
     }
 
     @Test
@@ -410,7 +410,7 @@ class AlertNotificationIntegrationTest {
     void testProcessingFailureRoutesToDlq() {
         // Simulate Redis failure to trigger DLQ routing
         doThrow(new RuntimeException("Simulated Redis failure"))
-                .when(redisStringService).get(anyString());
+                .when(redisStringService).getAndSet(anyString(), anyLong());
 
         try {
             CryptoEvent validEvent = new CryptoEvent("BTC", new BigDecimal("70000"), System.currentTimeMillis());
@@ -478,7 +478,7 @@ class AlertNotificationIntegrationTest {
 
         assertEquals(1, messageCount.get(), "Should have received exactly 1 notification for concurrent alerts");
         verify(webSocketHandler, timeout(15000).times(1))
-                .sendMessageToUser(eq(TEST_USERNAME), anyString());
+                .sendMessageToUser(eq(TEST_USERNAME), anyString(), any());
     }
 
     @Test
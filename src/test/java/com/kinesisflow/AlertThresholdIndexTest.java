@@ -0,0 +1,87 @@
+package com.kinesisflow;
+
+import com.kinesisflow.engine.AlertThresholdIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Alert Threshold Index Tests")
+class AlertThresholdIndexTest {
+
+    private static final String GT_KEY = "BTC:1";
+
+    private AlertThresholdIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AlertThresholdIndex();
+    }
+
+    @Test
+    @DisplayName("Should return users whose threshold lies in the half-open crossed range")
+    void shouldReturnUsersInHalfOpenRange() {
+        index.add(GT_KEY, "alice:49000", 49000);
+        index.add(GT_KEY, "bob:50000", 50000);
+        index.add(GT_KEY, "carol:51000", 51000);
+
+        assertThat(index.usersInRange(GT_KEY, 49000, 51000, true, false)).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(index.usersInRange(GT_KEY, 49000, 51000, false, true)).containsExactlyInAnyOrder("bob", "carol");
+        assertThat(index.usersInRange(GT_KEY, 51500, 60000, true, false)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should deduplicate users subscribed to several crossed thresholds")
+    void shouldDeduplicateUsers() {
+        index.add(GT_KEY, "alice:49000", 49000);
+        index.add(GT_KEY, "alice:50000", 50000);
+        index.add(GT_KEY, "alice:51000", 51000);
+
+        assertThat(index.usersInRange(GT_KEY, 48000, 52000, true, false)).containsExactly("alice");
+    }
+
+    @Test
+    @DisplayName("Should stop matching removed members and ignore duplicate adds")
+    void shouldHandleRemoveAndDuplicateAdd() {
+        index.add(GT_KEY, "alice:50000", 50000);
+        index.add(GT_KEY, "alice:50000", 50000);
+        index.add(GT_KEY, "bob:50000", 50000);
+
+        assertThat(index.size(GT_KEY)).isEqualTo(2);
+
+        index.remove(GT_KEY, "alice:50000");
+
+        assertThat(index.usersInRange(GT_KEY, 49000, 51000, true, false)).containsExactly("bob");
+    }
+
+    @Test
+    @DisplayName("Should merge and remove members in bulk")
+    void shouldAddAndRemoveInBulk() {
+        index.add(GT_KEY, "alice:50000", 50000);
+        index.add(GT_KEY, "bob:52000", 52000);
+
+        index.addAll(GT_KEY, new String[]{"carol:49000", "bob:52000", "dave:51000"}, new long[]{49000, 52000, 51000});
+
+        assertThat(index.size(GT_KEY)).isEqualTo(4);
+        assertThat(index.usersInRange(GT_KEY, 49000, 52000, true, false)).containsExactlyInAnyOrder("carol", "alice", "dave");
+
+        index.removeAll(GT_KEY, Set.of("carol:49000", "dave:51000", "missing:1"));
+
+        assertThat(index.usersInRange(GT_KEY, 0, 60000, true, false)).containsExactlyInAnyOrder("alice", "bob");
+    }
+
+    @Test
+    @DisplayName("Should replace a key with a snapshot loaded from Redis")
+    void shouldReplaceSnapshot() {
+        index.add(GT_KEY, "stale:10", 10);
+
+        index.replace(GT_KEY, new String[]{"carol:300", "alice:100", "bob:200"}, new long[]{300, 100, 200});
+
+        assertThat(index.size(GT_KEY)).isEqualTo(3);
+        assertThat(index.usersInRange(GT_KEY, 0, 1000, true, false)).containsExactlyInAnyOrder("alice", "bob", "carol");
+        assertThat(index.usersInRange(GT_KEY, 150, 250, true, false)).containsExactly("bob");
+    }
+}
@@ -0,0 +1,167 @@
+package com.kinesisflow;
+
+import com.kinesisflow.engine.AssetMailboxDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("Asset Mailbox Dispatcher Tests")
+class AssetMailboxDispatcherTest {
+
+    private static final String TOPIC = "raw-market-data";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadLetterPublishingRecoverer recoverer = mock(DeadLetterPublishingRecoverer.class);
+    private final Set<Long> acked = ConcurrentHashMap.newKeySet();
+    private AssetMailboxDispatcher dispatcher;
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private AssetMailboxDispatcher dispatcher(int maxInFlight) {
+        dispatcher = new AssetMailboxDispatcher(recoverer, new FixedBackOff(0, 1), maxInFlight, meterRegistry);
+        return dispatcher;
+    }
+
+    private void dispatch(long offset, String asset, Runnable task) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(TOPIC, 0, offset, asset, "tick");
+        dispatcher.dispatch(record, asset, () -> acked.add(offset), task);
+    }
+
+    private double mailboxCount() {
+        return meterRegistry.get("kinesisflow.consumer.mailbox.count").gauge().value();
+    }
+
+    @Test
+    @DisplayName("Should process each asset's records in dispatch order and drop idle mailboxes")
+    void shouldKeepPerAssetOrder() {
+        dispatcher(100);
+        String[] assets = {"BTC", "ETH", "SOL"};
+        Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+        for (String asset : assets) {
+            processed.put(asset, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        for (long offset = 0; offset < 3000; offset++) {
+            String asset = assets[(int) (offset % assets.length)];
+            long current = offset;
+            dispatch(offset, asset, () -> {
+                if (current % 7 == 0) {
+                    Thread.yield();
+                }
+                processed.get(asset).add(current);
+            });
+        }
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> acked.size() == 3000);
+        for (String asset : assets) {
+            assertThat(processed.get(asset)).hasSize(1000).isSorted();
+        }
+        await().atMost(Duration.ofSeconds(5)).until(() -> mailboxCount() == 0);
+    }
+
+    @Test
+    @DisplayName("Should block dispatch while max-in-flight records are pending")
+    void shouldBoundInFlight() throws Exception {
+        dispatcher(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        dispatch(0, "BTC", blocked);
+        dispatch(1, "ETH", blocked);
+
+        CountDownLatch third = new CountDownLatch(1);
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            dispatch(2, "SOL", () -> { });
+            third.countDown();
+        });
+
+        assertThat(third.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(dispatcher.inFlight()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(third.await(5, TimeUnit.SECONDS)).isTrue();
+        consumer.join();
+        await().atMost(Duration.ofSeconds(5)).until(() -> acked.size() == 3);
+        assertThat(dispatcher.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should wait for a revoked partition's records before returning")
+    void shouldDrainOnRevoke() {
+        dispatcher(100);
+        AtomicInteger done = new AtomicInteger();
+        for (long offset = 0; offset < 20; offset++) {
+            dispatch(offset, offset % 2 == 0 ? "BTC" : "ETH", () -> {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.incrementAndGet();
+            });
+        }
+
+        dispatcher.awaitPartitions(List.of(new TopicPartition(TOPIC, 0)), Duration.ofSeconds(5));
+
+        assertThat(done.get()).isEqualTo(20);
+        assertThat(acked).hasSize(20);
+    }
+
+    @Test
+    @DisplayName("Should keep retrying the DLQ and hold the record and its asset until it succeeds")
+    void shouldRetryDeadLetteringUntilItSucceeds() {
+        dispatcher(10);
+        AtomicBoolean dlqUp = new AtomicBoolean();
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            attempts.incrementAndGet();
+            if (!dlqUp.get()) {
+                throw new IllegalStateException("DLQ unavailable");
+            }
+            return null;
+        }).when(recoverer).accept(any(), any());
+
+        dispatch(0, "BTC", () -> {
+            throw new IllegalStateException("processing failed");
+        });
+        dispatch(1, "BTC", () -> { });
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> attempts.get() >= 3);
+        assertThat(acked).isEmpty();
+        assertThat(dispatcher.inFlight()).isEqualTo(2);
+
+        dlqUp.set(true);
+        await().atMost(Duration.ofSeconds(5)).until(() -> acked.size() == 2);
+    }
+}
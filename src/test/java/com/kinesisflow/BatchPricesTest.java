@@ -0,0 +1,87 @@
+package com.kinesisflow;
+
+import com.kinesisflow.engine.BatchPrices;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Batch Prices Tests")
+class BatchPricesTest {
+
+    private static final String[] ASSETS = {"BTC", "ETH", "SOL"};
+
+    // (former, current) price pairs the engine compares, per record index
+    private static Map<Integer, List<Long>> comparisons(Map<String, Long> start, String[] assets, long[] prices, int from) {
+        Map<String, Long> former = new HashMap<>(start);
+        Map<Integer, List<Long>> pairs = new HashMap<>();
+        for (int i = from; i < prices.length; i++) {
+            Long before = former.put(assets[i], prices[i]);
+            List<Long> pair = new ArrayList<>();
+            pair.add(before);
+            pair.add(prices[i]);
+            pairs.put(i, pair);
+        }
+        return pairs;
+    }
+
+    @Test
+    @DisplayName("Should roll each asset back to its price after the last record before the failed one")
+    void shouldRollBackToFailedIndex() {
+        BatchPrices prices = new BatchPrices();
+        prices.add("BTC", 0, 101);
+        prices.add("ETH", 1, 10);
+        prices.add("BTC", 2, 103);
+        prices.add("SOL", 3, 55);
+        prices.add("BTC", 4, 99);
+        prices.previous("BTC", 100L);
+        prices.previous("ETH", null);
+        prices.previous("SOL", 50L);
+
+        assertThat(prices.pricesBefore(0))
+                .containsEntry("BTC", 100L).containsEntry("ETH", null).containsEntry("SOL", 50L);
+        assertThat(prices.pricesBefore(1))
+                .containsEntry("BTC", 101L).containsEntry("ETH", null).containsEntry("SOL", 50L);
+        assertThat(prices.pricesBefore(3))
+                .containsEntry("BTC", 103L).containsEntry("ETH", 10L).containsEntry("SOL", 50L);
+        assertThat(prices.lastPrices())
+                .containsEntry("BTC", 99L).containsEntry("ETH", 10L).containsEntry("SOL", 55L);
+    }
+
+    @Test
+    @DisplayName("Should let redelivered records compare against the same prices as an uninterrupted batch")
+    void shouldReplayRedeliveryConsistently() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 5_000; trial++) {
+            int size = 1 + random.nextInt(20);
+            String[] assets = new String[size];
+            long[] ticks = new long[size];
+            BatchPrices prices = new BatchPrices();
+            for (int i = 0; i < size; i++) {
+                assets[i] = ASSETS[random.nextInt(ASSETS.length)];
+                ticks[i] = 90 + random.nextInt(20);
+                prices.add(assets[i], i, ticks[i]);
+            }
+
+            Map<String, Long> previous = new HashMap<>();
+            for (String asset : prices.assets()) {
+                Long price = random.nextBoolean() ? (long) (90 + random.nextInt(20)) : null;
+                prices.previous(asset, price);
+                previous.put(asset, price);
+            }
+
+            int failedIndex = random.nextInt(size);
+            Map<Integer, List<Long>> uninterrupted = comparisons(previous, assets, ticks, 0);
+            Map<Integer, List<Long>> redelivered = comparisons(prices.pricesBefore(failedIndex), assets, ticks, failedIndex);
+            for (int i = failedIndex; i < size; i++) {
+                assertThat(redelivered.get(i)).isEqualTo(uninterrupted.get(i));
+            }
+        }
+    }
+}
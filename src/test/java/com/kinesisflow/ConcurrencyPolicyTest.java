@@ -0,0 +1,73 @@
+package com.kinesisflow;
+
+import com.kinesisflow.service.ConcurrencyPolicy;
+import com.kinesisflow.service.ConsumerLagMonitor.LagSample;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Concurrency Policy Tests")
+class ConcurrencyPolicyTest {
+
+    private static final long COOLDOWN = TimeUnit.SECONDS.toNanos(60);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static ConcurrencyPolicy policy(int jitterSamples) {
+        return new ConcurrencyPolicy(10_000, 1_000, 3, 1, 0, COOLDOWN, () -> jitterSamples);
+    }
+
+    private static LagSample lag(long totalLag) {
+        return new LagSample(totalLag, 12, 1, 0);
+    }
+
+    @Test
+    @DisplayName("Should double on high lag, then hold through the cooldown")
+    void shouldScaleUpWithCooldown() {
+        ConcurrencyPolicy policy = policy(0);
+
+        assertThat(policy.decide(1, lag(50_000), 0)).isEqualTo(2);
+        assertThat(policy.decide(2, lag(50_000), 30 * SECOND)).isEqualTo(2);
+        assertThat(policy.decide(2, lag(50_000), 61 * SECOND)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should scale down only after enough low samples in a row")
+    void shouldScaleDownWithHysteresis() {
+        ConcurrencyPolicy policy = policy(0);
+
+        assertThat(policy.decide(4, lag(500), 0)).isEqualTo(4);
+        assertThat(policy.decide(4, lag(500), SECOND)).isEqualTo(4);
+        // Between the thresholds: the run of low samples starts over
+        assertThat(policy.decide(4, lag(5_000), 2 * SECOND)).isEqualTo(4);
+        assertThat(policy.decide(4, lag(500), 3 * SECOND)).isEqualTo(4);
+        assertThat(policy.decide(4, lag(500), 4 * SECOND)).isEqualTo(4);
+        assertThat(policy.decide(4, lag(500), 5 * SECOND)).isEqualTo(3);
+        // Never below min-concurrency
+        assertThat(policy.decide(1, lag(0), 100 * SECOND)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should wait the node's extra samples before acting")
+    void shouldApplyJitter() {
+        ConcurrencyPolicy policy = policy(2);
+
+        assertThat(policy.decide(1, lag(50_000), 0)).isEqualTo(1);
+        assertThat(policy.decide(1, lag(50_000), SECOND)).isEqualTo(1);
+        assertThat(policy.decide(1, lag(50_000), 2 * SECOND)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should cap at this node's share of the partitions")
+    void shouldCapAtPartitionShare() {
+        ConcurrencyPolicy policy = policy(0);
+
+        assertThat(policy.maxFor(new LagSample(0, 12, 3, 0))).isEqualTo(4);
+        assertThat(policy.maxFor(new LagSample(0, 10, 3, 0))).isEqualTo(4);
+        assertThat(policy.decide(4, new LagSample(50_000, 12, 3, 0), 0)).isEqualTo(4);
+        // A fourth node joined: shrink to the new share
+        assertThat(policy.decide(4, new LagSample(50_000, 12, 4, 0), 61 * SECOND)).isEqualTo(3);
+    }
+}
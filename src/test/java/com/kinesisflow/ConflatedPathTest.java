@@ -0,0 +1,92 @@
+package com.kinesisflow;
+
+import com.kinesisflow.engine.ConflatedPath;
+import com.kinesisflow.record.CryptoEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Conflated Path Tests")
+class ConflatedPathTest {
+
+    private static List<Integer> prices(List<CryptoEvent> events) {
+        return events.stream().map(event -> event.price().intValue()).toList();
+    }
+
+    private static CryptoEvent tick(int price, long timestamp) {
+        return new CryptoEvent("BTC", BigDecimal.valueOf(price), timestamp);
+    }
+
+    // Thresholds the engine would fire for: GT on [former, current) going up, LT on [current, former) going down
+    private static Set<String> crossings(List<Integer> path) {
+        Set<String> fired = new TreeSet<>();
+        for (int i = 1; i < path.size(); i++) {
+            int former = path.get(i - 1);
+            int current = path.get(i);
+            for (int threshold = Math.min(former, current); threshold < Math.max(former, current); threshold++) {
+                fired.add((current > former ? "GT:" : "LT:") + threshold);
+            }
+        }
+        return fired;
+    }
+
+    @Test
+    @DisplayName("Should keep the extremes in order and the latest tick")
+    void shouldKeepExtremesAndLatest() {
+        ConflatedPath path = new ConflatedPath(8);
+        int[] prices = {100, 101, 103, 102, 103, 95, 96, 97, 96, 97};
+        for (int i = 0; i < prices.length; i++) {
+            path.add(tick(prices[i], i));
+        }
+
+        List<CryptoEvent> drained = path.drain();
+        assertThat(prices(drained)).containsExactly(100, 103, 95, 97);
+        assertThat(drained.get(drained.size() - 1).timestamp()).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("Should fire the same crossings as the full tick sequence")
+    void shouldPreserveCrossings() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 10_000; trial++) {
+            ConflatedPath path = new ConflatedPath(3 + random.nextInt(6));
+            List<Integer> original = new ArrayList<>(List.of(50));
+            List<Integer> conflated = new ArrayList<>(List.of(50));
+
+            int price = 50;
+            for (int i = 0; i < 40; i++) {
+                price = Math.max(0, Math.min(100, price + random.nextInt(9) - 4));
+                original.add(price);
+                path.add(tick(price, i));
+                if (path.isFull()) {
+                    conflated.addAll(prices(path.drain()));
+                }
+            }
+            conflated.addAll(prices(path.drain()));
+
+            assertThat(crossings(conflated)).isEqualTo(crossings(original));
+            assertThat(conflated.getLast()).isEqualTo(original.getLast());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the first tick of every window, whatever earlier windows sent")
+    void shouldNotDependOnEarlierWindows() {
+        ConflatedPath path = new ConflatedPath(8);
+        path.add(tick(100, 0));
+        path.drain();
+
+        // Another ingest path may have sent 90 in between: 101 still starts the next segment
+        path.add(tick(101, 1));
+        path.add(tick(102, 2));
+        assertThat(prices(path.drain())).containsExactly(101, 102);
+    }
+}
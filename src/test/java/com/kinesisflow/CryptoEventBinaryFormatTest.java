@@ -0,0 +1,75 @@
+package com.kinesisflow;
+
+import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.serde.AssetDictionary;
+import com.kinesisflow.serde.CryptoEventBatchFormat;
+import com.kinesisflow.serde.CryptoEventBinaryFormat;
+import com.kinesisflow.serde.CryptoEventDeserializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("CryptoEvent Binary Format Tests")
+class CryptoEventBinaryFormatTest {
+
+    private final AssetDictionary dictionary = AssetDictionary.of("BTC,ETH,SOL");
+
+    @Test
+    @DisplayName("Should round-trip dictionary and inline assets exactly")
+    void shouldRoundTrip() {
+        CryptoEvent known = new CryptoEvent("BTC", new BigDecimal("51000.25"), 1700000000123L);
+        CryptoEvent inline = new CryptoEvent("PEPE", new BigDecimal("0.00000123"), 1700000000456L);
+
+        assertThat(CryptoEventBinaryFormat.decode(CryptoEventBinaryFormat.encode(known, dictionary), dictionary)).isEqualTo(known);
+        assertThat(CryptoEventBinaryFormat.decode(CryptoEventBinaryFormat.encode(inline, dictionary), dictionary)).isEqualTo(inline);
+    }
+
+    @Test
+    @DisplayName("Should be much smaller than the JSON encoding")
+    void shouldBeCompact() {
+        byte[] encoded = CryptoEventBinaryFormat.encode(new CryptoEvent("BTC", new BigDecimal("51000.25"), 1700000000123L), dictionary);
+
+        assertThat(encoded.length).isLessThan(16);
+    }
+
+    @Test
+    @DisplayName("Should keep invalid events so validation can route them to the DLQ")
+    void shouldCarryNullFields() {
+        CryptoEvent invalid = new CryptoEvent(null, null, 42L);
+
+        assertThat(CryptoEventBinaryFormat.decode(CryptoEventBinaryFormat.encode(invalid, dictionary), dictionary)).isEqualTo(invalid);
+    }
+
+    @Test
+    @DisplayName("Should sniff JSON and binary payloads")
+    void shouldSniffFormat() {
+        CryptoEventDeserializer deserializer = new CryptoEventDeserializer(dictionary);
+        CryptoEvent event = new CryptoEvent("ETH", new BigDecimal("3200.50"), 1700000000000L);
+        byte[] json = "{\"asset\":\"ETH\",\"price\":3200.50,\"timestamp\":1700000000000}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(deserializer.deserialize("raw-market-data", CryptoEventBinaryFormat.encode(event, dictionary))).isEqualTo(event);
+        assertThat(deserializer.deserialize("raw-market-data", json)).isEqualTo(event);
+    }
+
+    @Test
+    @DisplayName("Should round-trip batch frames and reject oversized or truncated ones")
+    void shouldRoundTripBatchFrames() {
+        List<CryptoEvent> events = List.of(
+                new CryptoEvent("BTC", new BigDecimal("51000.25"), 1700000000123L),
+                new CryptoEvent("PEPE", new BigDecimal("0.00000123"), 1700000000456L),
+                new CryptoEvent(null, null, 0));
+        byte[] frame = CryptoEventBatchFormat.encode(42, events, dictionary);
+
+        assertThat(CryptoEventBatchFormat.decode(frame, dictionary, 10)).isEqualTo(new CryptoEventBatchFormat.Batch(42, events));
+        assertThatThrownBy(() -> CryptoEventBatchFormat.decode(frame, dictionary, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CryptoEventBatchFormat.decode(Arrays.copyOf(frame, frame.length - 1), dictionary, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
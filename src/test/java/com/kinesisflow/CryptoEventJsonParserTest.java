@@ -0,0 +1,65 @@
+package com.kinesisflow;
+
+import com.kinesisflow.record.CryptoEvent;
+import com.kinesisflow.serde.CryptoEventJsonParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("CryptoEvent JSON Parser Tests")
+class CryptoEventJsonParserTest {
+
+    private final CryptoEventJsonParser parser = new CryptoEventJsonParser();
+
+    private CryptoEvent parse(String json) {
+        return parser.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should parse fields in any order, skip unknown ones and keep the price scale")
+    void shouldParseLikeJackson() {
+        CryptoEvent event = parse(" {\"timestamp\": 1700000000123, \"meta\": {\"tags\": [\"a\", \"}\"]},\n \"price\": \"51000.250\", \"asset\": \"BTC\"} ");
+
+        assertThat(event).isEqualTo(new CryptoEvent("BTC", new BigDecimal("51000.250"), 1700000000123L));
+    }
+
+    @Test
+    @DisplayName("Should return the same asset instance for repeated symbols")
+    void shouldInternAssets() {
+        CryptoEvent first = parse("{\"asset\":\"ETH\",\"price\":3000,\"timestamp\":1}");
+        CryptoEvent second = parse("{\"asset\":\"ETH\",\"price\":3001,\"timestamp\":2}");
+
+        assertThat(second.asset()).isSameAs(first.asset());
+    }
+
+    @Test
+    @DisplayName("Should keep invalid events so validation can route them to the DLQ")
+    void shouldCarryInvalidFields() {
+        assertThat(parse("{\"asset\":null,\"price\":-5.5}")).isEqualTo(new CryptoEvent(null, new BigDecimal("-5.5"), 0));
+        assertThat(parse("{\"asset\":\"\",\"price\":null,\"timestamp\":null}")).isEqualTo(new CryptoEvent("", null, 0));
+    }
+
+    @Test
+    @DisplayName("Should hand exponents, escapes, leading zeros, invalid UTF-8 and malformed input back to Jackson")
+    void shouldRejectUnsupportedInput() {
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":5.1E4}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"B\\u0054C\",\"price\":1}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":1")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":12345678901234567890}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":007}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":\"-00.5\"}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        assertThatThrownBy(() -> parse("{\"asset\":\"BTC\",\"price\":1,\"timestamp\":0123}")).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+
+        // "BT" followed by a lead byte with no continuation, then an encoded surrogate
+        byte[] truncatedSequence = "{\"asset\":\"BT?\",\"price\":1}".getBytes(StandardCharsets.US_ASCII);
+        truncatedSequence[12] = (byte) 0xC3;
+        assertThatThrownBy(() -> parser.parse(truncatedSequence)).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+        byte[] surrogate = {'{', '"', 'a', 's', 's', 'e', 't', '"', ':', '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"', '}'};
+        assertThatThrownBy(() -> parser.parse(surrogate)).isInstanceOf(CryptoEventJsonParser.Unsupported.class);
+    }
+}
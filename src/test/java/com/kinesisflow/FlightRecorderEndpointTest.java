@@ -0,0 +1,92 @@
+package com.kinesisflow;
+
+import com.kinesisflow.jfr.FlightRecorderEndpoint;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Flight Recorder Endpoint Tests")
+class FlightRecorderEndpointTest {
+
+    private final FlightRecorderEndpoint endpoint = new FlightRecorderEndpoint("default", 60, 10);
+
+    @AfterEach
+    void stopRecording() {
+        endpoint.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should start once, keep the running recording on a second start and stop it")
+    void shouldStartAndStop() {
+        assertThat(endpoint.status()).containsEntry("state", "STOPPED");
+
+        Map<String, Object> started = endpoint.start(null, null);
+        assertThat(started).containsEntry("state", "RUNNING");
+
+        Map<String, Object> again = endpoint.start(30L, 5L);
+        assertThat(again.get("startTime")).isEqualTo(started.get("startTime"));
+        assertThat(again).containsEntry("maxAgeSeconds", 60L).containsEntry("maxSizeMb", 10L);
+
+        assertThat(endpoint.stop()).containsEntry("state", "STOPPED");
+        assertThat(endpoint.stop()).containsEntry("state", "STOPPED");
+    }
+
+    @Test
+    @DisplayName("Should cap the requested age and size at the configured limits")
+    void shouldCapAgeAndSize() {
+        assertThat(endpoint.start(3600L, 1000L))
+                .containsEntry("maxAgeSeconds", 60L)
+                .containsEntry("maxSizeMb", 10L);
+        endpoint.stop();
+
+        assertThat(endpoint.start(30L, 5L))
+                .containsEntry("maxAgeSeconds", 30L)
+                .containsEntry("maxSizeMb", 5L);
+        endpoint.stop();
+
+        assertThat(endpoint.start(0L, -1L))
+                .containsEntry("maxAgeSeconds", 60L)
+                .containsEntry("maxSizeMb", 10L);
+    }
+
+    @Test
+    @DisplayName("Should dump only while recording and leave out environment and system properties")
+    void shouldDumpWithoutSensitiveEvents() throws Exception {
+        assertThat(endpoint.dump("dump").getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+
+        endpoint.start(null, null);
+        assertThat(endpoint.dump("other").getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+
+        WebEndpointResponse<Resource> response = endpoint.dump("dump");
+        assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+
+        Path copy = Files.createTempFile("kinesisflow-test-", ".jfr");
+        try {
+            try (InputStream in = response.getBody().getInputStream()) {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(copy);
+            assertThat(events).isNotEmpty();
+            assertThat(events).extracting(event -> event.getEventType().getName())
+                    .doesNotContain("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+
+        endpoint.stop();
+        assertThat(endpoint.dump("dump").getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+}
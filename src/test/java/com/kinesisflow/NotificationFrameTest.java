@@ -0,0 +1,55 @@
+package com.kinesisflow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinesisflow.record.NotificationBatch;
+import com.kinesisflow.record.PipelineTrace;
+import com.kinesisflow.websocket.NotificationFrame;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Notification Frame Tests")
+class NotificationFrameTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final NotificationBatch batch = new NotificationBatch(
+            "BTC", new BigDecimal("51000.50"), 1700000000000L, List.of("alice", "bob\"quoted"));
+
+    @Test
+    @DisplayName("Should splice each user into a payload identical to the serialized notification")
+    void shouldMatchJacksonPerUser() throws Exception {
+        NotificationFrame frame = NotificationFrame.of(batch, objectMapper, true);
+
+        for (String user : batch.users()) {
+            assertThat(frame.payloadFor(user)).isEqualTo(objectMapper.writeValueAsString(batch.forUser(user)));
+        }
+        assertThat(frame.isShared()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should share one user-less message when the user is omitted")
+    void shouldShareMessageWithoutUser() throws Exception {
+        NotificationFrame frame = NotificationFrame.of(batch, objectMapper, false);
+
+        assertThat(frame.isShared()).isTrue();
+        assertThat(frame.sharedMessage().getPayload())
+                .isEqualTo("{\"asset\":\"BTC\",\"price\":51000.50,\"timestamp\":1700000000000}");
+    }
+
+    @Test
+    @DisplayName("Should carry the pipeline trace in the batch but never in user payloads")
+    void shouldKeepTraceOutOfPayloads() throws Exception {
+        NotificationBatch traced = batch.withTrace(new PipelineTrace(1700000000001L, 1700000000002L, 1700000000003L, 1700000000004L));
+
+        assertThat(objectMapper.writeValueAsString(batch)).doesNotContain("trace");
+        assertThat(objectMapper.readValue(objectMapper.writeValueAsString(traced), NotificationBatch.class)).isEqualTo(traced);
+        assertThat(NotificationFrame.of(traced, objectMapper, true).payloadFor("alice"))
+                .isEqualTo(NotificationFrame.of(batch, objectMapper, true).payloadFor("alice"));
+        assertThat(NotificationFrame.of(traced, objectMapper, false).sharedMessage().getPayload()).doesNotContain("trace");
+    }
+}
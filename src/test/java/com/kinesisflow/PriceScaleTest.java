@@ -0,0 +1,49 @@
+package com.kinesisflow;
+
+import com.kinesisflow.engine.PriceScale;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Price Scale Tests")
+class PriceScaleTest {
+
+    private final PriceScale priceScale = new PriceScale(2, "SHIB=8, BTC=2");
+
+    @Test
+    @DisplayName("Should convert prices to exact units using the asset scale")
+    void shouldConvertToUnits() {
+        assertThat(priceScale.toUnits("BTC", new BigDecimal("50000.10"))).isEqualTo(5000010L);
+        assertThat(priceScale.toUnits("SHIB", new BigDecimal("0.00001234"))).isEqualTo(1234L);
+        assertThat(priceScale.toUnits("ETH", new BigDecimal("3000"))).isEqualTo(300000L);
+        assertThat(priceScale.toPrice("SHIB", 1234L)).isEqualByComparingTo("0.00001234");
+    }
+
+    @Test
+    @DisplayName("Should keep neighbouring prices exactly one unit apart")
+    void shouldKeepNeighbouringPricesDistinct() {
+        PriceScale fine = new PriceScale(10, "");
+
+        long lower = fine.toUnits("BTC", new BigDecimal("123456.0000000001"));
+        long upper = fine.toUnits("BTC", new BigDecimal("123456.0000000002"));
+
+        assertThat(upper - lower).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should decode both unit and legacy decimal last prices")
+    void shouldDecodeLegacyValues() {
+        assertThat(priceScale.decode("BTC", "5000000")).isEqualTo(5000000L);
+        assertThat(priceScale.decode("BTC", "50000.0")).isEqualTo(5000000L);
+    }
+
+    @Test
+    @DisplayName("Should reject units outside the exact range of a Redis score")
+    void shouldRejectInexactScores() {
+        assertThatThrownBy(() -> priceScale.toScore(1L << 53)).isInstanceOf(ArithmeticException.class);
+    }
+}
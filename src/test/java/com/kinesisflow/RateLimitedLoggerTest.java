@@ -0,0 +1,50 @@
+package com.kinesisflow;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.kinesisflow.logging.RateLimitedLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Rate Limited Logger Tests")
+class RateLimitedLoggerTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RateLimitedLoggerTest.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detach() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    @DisplayName("Should log up to the permits per interval and report the suppressed count afterwards")
+    void shouldSuppressBeyondPermits() throws Exception {
+        RateLimitedLogger limited = RateLimitedLogger.of(logger, 3, Duration.ofMillis(50));
+
+        for (int i = 0; i < 10; i++) {
+            limited.warn("event {}", i);
+        }
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("event 0", "event 1", "event 2");
+
+        Thread.sleep(60);
+        limited.warn("event {}", 10);
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+                .endsWith("7 similar messages suppressed by rate limiting", "event 10");
+    }
+}
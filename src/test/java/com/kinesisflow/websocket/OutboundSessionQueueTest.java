@@ -0,0 +1,173 @@
+package com.kinesisflow.websocket;
+
+import com.kinesisflow.record.PipelineTrace;
+import com.kinesisflow.websocket.OutboundSessionQueue.Limits;
+import com.kinesisflow.websocket.OutboundSessionQueue.OverflowPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Outbound Session Queue Tests")
+class OutboundSessionQueueTest {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final List<String> sent = new ArrayList<>();
+    // Drain tasks run only when the test says so, so the queue can fill up first
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor manualExecutor = tasks::add;
+    private final RecordingListener listener = new RecordingListener();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("session-1");
+        doAnswer(invocation -> {
+            sent.add(invocation.<TextMessage>getArgument(0).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+    }
+
+    private OutboundSessionQueue queue(OverflowPolicy policy, Executor executor) {
+        return new OutboundSessionQueue("alice", session, new Limits(2, 1024, 1000, policy), executor, listener);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest messages at the limit with DROP_OLDEST")
+    void shouldDropOldest() {
+        OutboundSessionQueue queue = queue(OverflowPolicy.DROP_OLDEST, manualExecutor);
+
+        queue.offer("BTC", new TextMessage("a"));
+        queue.offer("ETH", new TextMessage("b"));
+        queue.offer("SOL", new TextMessage("c"));
+        runTasks();
+
+        assertThat(sent).containsExactly("b", "c");
+        assertThat(listener.dropped).isEqualTo(1);
+        assertThat(listener.evicted).isNull();
+    }
+
+    @Test
+    @DisplayName("Should replace the older message of the same asset with COALESCE")
+    void shouldCoalesceSameAsset() {
+        OutboundSessionQueue queue = queue(OverflowPolicy.COALESCE, manualExecutor);
+
+        queue.offer("BTC", new TextMessage("btc-1"));
+        queue.offer("ETH", new TextMessage("eth-1"));
+        queue.offer("BTC", new TextMessage("btc-2"));
+        // No queued message of SOL: the oldest goes
+        queue.offer("SOL", new TextMessage("sol-1"));
+        runTasks();
+
+        assertThat(sent).containsExactly("btc-2", "sol-1");
+        assertThat(listener.dropped).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should evict the session with everything pending with DISCONNECT")
+    void shouldDisconnectAtLimit() throws IOException {
+        OutboundSessionQueue queue = queue(OverflowPolicy.DISCONNECT, manualExecutor);
+
+        queue.offer("BTC", new TextMessage("a"));
+        queue.offer("ETH", new TextMessage("b"));
+        assertThat(queue.offer("SOL", new TextMessage("c"))).isTrue();
+
+        assertThat(listener.reason).isEqualTo("buffer-limit");
+        assertThat(listener.evicted).containsExactly("a", "b", "c");
+        assertThat(queue.isClosed()).isTrue();
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+
+        // Closed: the caller keeps the payload
+        assertThat(queue.offer("BTC", new TextMessage("d"))).isFalse();
+        runTasks();
+        assertThat(sent).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should spill the failed and queued messages to the listener when a send fails")
+    void shouldSpillOnSendFailure() throws IOException {
+        doThrow(new IOException("broken pipe")).when(session).sendMessage(any());
+        OutboundSessionQueue queue = queue(OverflowPolicy.DROP_OLDEST, manualExecutor);
+
+        queue.offer("BTC", new TextMessage("a"));
+        queue.offer("ETH", new TextMessage("b"));
+        runTasks();
+
+        assertThat(listener.reason).isEqualTo("send-failure");
+        assertThat(listener.evicted).containsExactly("a", "b");
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    @DisplayName("Should spill everything pending when a send is blocked past the send time limit")
+    void shouldSpillOnSendTimeLimit() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+        OutboundSessionQueue queue = new OutboundSessionQueue("alice", session,
+                new Limits(10, 1024, 200, OverflowPolicy.DROP_OLDEST),
+                task -> Thread.ofVirtual().start(task), listener);
+
+        queue.offer("BTC", new TextMessage("a"));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.offer("ETH", new TextMessage("b"));
+        Thread.sleep(400);
+        queue.offer("SOL", new TextMessage("c"));
+        release.countDown();
+
+        assertThat(listener.reason).isEqualTo("send-time-limit");
+        assertThat(listener.evicted).containsExactly("b", "c");
+    }
+
+    private static final class RecordingListener implements OutboundSessionQueue.Listener {
+
+        private int dropped;
+        private volatile List<String> evicted;
+        private volatile String reason;
+
+        @Override
+        public void onDropped(OutboundSessionQueue queue, int messages) {
+            dropped += messages;
+        }
+
+        @Override
+        public void onEvicted(OutboundSessionQueue queue, List<String> pending, String reason) {
+            this.evicted = List.copyOf(pending);
+            this.reason = reason;
+        }
+
+        @Override
+        public void onSent(OutboundSessionQueue queue, PipelineTrace trace) {
+        }
+    }
+}